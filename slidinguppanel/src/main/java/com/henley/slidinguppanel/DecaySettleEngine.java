@@ -0,0 +1,220 @@
+package com.henley.slidinguppanel;
+
+/**
+ * 基于指数衰减的滑动面板停靠动画引擎
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>速度按v(t) = v0·e^(-t/τ)衰减，位置是时间的解析函数，与刷新率无关
+ * <li>停靠到目标位置({@link #startSettle})时根据释放速度求出时间常数(限制在一定范围内)，
+ * 再叠加一个t·e^(-t/τ)修正项，使初速度与释放速度(或重新指定目标时的当前速度)完全一致，即使速度方向与目标方向相反
+ * <li>停靠过程中位置限制在起点和目标之间，到达目标即停止，不会越过目标
+ * <li>快速滑动({@link #startFling})时使用固定的时间常数，到达边界或速度足够小时停止
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class DecaySettleEngine extends ViewDragHelper.SettleEngine {
+
+    /**
+     * 默认衰减时间常数(单位：s)
+     */
+    public static final float DEFAULT_TIME_CONSTANT = 0.12f;
+    /**
+     * 停靠时由释放速度求出的时间常数的范围(单位：s)
+     */
+    private static final float MIN_SETTLE_TIME_CONSTANT = 0.04f;
+    private static final float MAX_SETTLE_TIME_CONSTANT = 0.2f;
+    /**
+     * 距离目标小于该值(单位：px)时认为已经静止
+     */
+    private static final float REST_DISPLACEMENT = 0.5f;
+    /**
+     * 快速滑动时速度小于该值(单位：px/s)时认为已经静止
+     */
+    private static final float REST_VELOCITY = 20f;
+
+    private final float mTimeConstant;
+    private final Axis mAxisX = new Axis();
+    private final Axis mAxisY = new Axis();
+    private boolean mFinished = true;
+
+    public DecaySettleEngine() {
+        this(DEFAULT_TIME_CONSTANT);
+    }
+
+    /**
+     * @param timeConstant 衰减时间常数(单位：s，必须大于0，值越大滑动越远)
+     */
+    public DecaySettleEngine(float timeConstant) {
+        if (timeConstant <= 0) {
+            throw new IllegalArgumentException("Decay time constant must be greater than 0.");
+        }
+        mTimeConstant = timeConstant;
+    }
+
+    /**
+     * 返回衰减时间常数(单位：s)
+     */
+    public float getTimeConstant() {
+        return mTimeConstant;
+    }
+
+    @Override
+    public void startSettle(int startX, int startY, int finalX, int finalY, int xvel, int yvel, long timeMillis) {
+        final boolean retarget = !mFinished && xvel == 0 && yvel == 0;
+        mAxisX.startSettle(startX, finalX, retarget ? mAxisX.velocity : xvel, mTimeConstant);
+        mAxisY.startSettle(startY, finalY, retarget ? mAxisY.velocity : yvel, mTimeConstant);
+        start(timeMillis);
+    }
+
+    @Override
+    public void startFling(int startX, int startY, int xvel, int yvel, int minX, int maxX, int minY, int maxY, long timeMillis) {
+        mAxisX.startFling(startX, xvel, minX, maxX, mTimeConstant);
+        mAxisY.startFling(startY, yvel, minY, maxY, mTimeConstant);
+        start(timeMillis);
+    }
+
+    private void start(long timeMillis) {
+        mAxisX.startTime = timeMillis;
+        mAxisY.startTime = timeMillis;
+        mFinished = mAxisX.isAtRest() && mAxisY.isAtRest();
+        if (mFinished) {
+            mAxisX.finish();
+            mAxisY.finish();
+        }
+    }
+
+    @Override
+    public boolean computeOffset(long timeMillis) {
+        if (mFinished) {
+            return false;
+        }
+        mAxisX.update(timeMillis);
+        mAxisY.update(timeMillis);
+        if (mAxisX.isAtRest() && mAxisY.isAtRest()) {
+            abortAnimation();
+        }
+        return true;
+    }
+
+    @Override
+    public int getCurrX() {
+        return mAxisX.current;
+    }
+
+    @Override
+    public int getCurrY() {
+        return mAxisY.current;
+    }
+
+    @Override
+    public int getFinalX() {
+        return mAxisX.target;
+    }
+
+    @Override
+    public int getFinalY() {
+        return mAxisY.target;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public void abortAnimation() {
+        mAxisX.finish();
+        mAxisY.finish();
+        mFinished = true;
+    }
+
+    /**
+     * 单个坐标轴上的衰减运动状态
+     */
+    private static final class Axis {
+        int start;
+        int target;
+        int current;
+        int min;
+        int max;
+        /**
+         * 总位移(单位：px)，x(t) = start + distance·(1 - e^(-t/τ)) + correction·t·e^(-t/τ)
+         */
+        float distance;
+        /**
+         * 使初速度等于指定速度的修正项系数(单位：px/s)，修正项在起点和终点的位移都为0
+         */
+        float correction;
+        float timeConstant;
+        long startTime;
+        float velocity;
+        /**
+         * 是否为快速滑动(快速滑动以速度判断静止，停靠以距离判断静止)
+         */
+        boolean fling;
+
+        void startSettle(int start, int target, float velocity, float defaultTimeConstant) {
+            final float distance = target - start;
+            float timeConstant = defaultTimeConstant;
+            if (distance != 0 && velocity != 0 && Math.signum(distance) == Math.signum(velocity)) {
+                // 初速度为distance/τ，据此求出与释放速度一致的时间常数(超出范围时由修正项补足差值)
+                timeConstant = Math.max(MIN_SETTLE_TIME_CONSTANT,
+                        Math.min(distance / velocity, MAX_SETTLE_TIME_CONSTANT));
+            }
+            init(start, target, distance, timeConstant, Math.min(start, target), Math.max(start, target), false);
+            // 未修正时初速度为distance/τ，补上与指定速度的差值
+            this.correction = velocity - distance / timeConstant;
+            this.velocity = velocity;
+        }
+
+        void startFling(int start, float velocity, int min, int max, float timeConstant) {
+            final float distance = velocity * timeConstant;
+            final int target = Math.max(min, Math.min(Math.round(start + distance), max));
+            init(start, target, distance, timeConstant, min, max, true);
+        }
+
+        private void init(int start, int target, float distance, float timeConstant, int min, int max, boolean fling) {
+            this.start = start;
+            this.target = target;
+            this.current = start;
+            this.distance = distance;
+            this.timeConstant = timeConstant;
+            this.min = min;
+            this.max = max;
+            this.velocity = distance / timeConstant;
+            this.correction = 0;
+            this.fling = fling;
+        }
+
+        void update(long timeMillis) {
+            final float t = Math.max(0, timeMillis - startTime) / 1000f;
+            final float decay = (float) Math.exp(-t / timeConstant);
+            velocity = (distance / timeConstant + correction * (1 - t / timeConstant)) * decay;
+            final float position = start + distance * (1 - decay) + correction * t * decay;
+            if (!fling && (target - position) * distance <= 0) {
+                // 到达或越过目标，停在目标位置
+                finish();
+                return;
+            }
+            current = Math.max(min, Math.min(Math.round(position), max));
+            if (fling && ((current == min && distance < 0) || (current == max && distance > 0))) {
+                // 到达边界，停止快速滑动
+                velocity = 0;
+            }
+        }
+
+        boolean isAtRest() {
+            if (fling) {
+                return Math.abs(velocity) < REST_VELOCITY || current == target;
+            }
+            return Math.abs(target - current) < REST_DISPLACEMENT;
+        }
+
+        void finish() {
+            current = target;
+            velocity = 0;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.henley.slidinguppanel;
+
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.animation.Interpolator;
+
+/**
+ * 滑动偏移量与视图属性的绑定
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>滑动偏移量在[fromOffset, toOffset]范围内变化时，目标视图的属性按插值曲线从起始值变化到结束值，范围之外保持边界值
+ * <li>通过{@link SlidingUpPanelLayout#addOffsetBinding(View, int, float, float, float, float, Interpolator)}创建，
+ * 滑动面板布局在更新视差之后的同一次遍历中计算所有绑定
+ * <li>目标视图在创建时确定，计算时不查找视图、不分配内存，属性值未改变时不设置
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public final class OffsetBinding {
+
+    /**
+     * 透明度
+     */
+    public static final int PROPERTY_ALPHA = 0;
+    /**
+     * X轴平移量(单位：px)
+     */
+    public static final int PROPERTY_TRANSLATION_X = 1;
+    /**
+     * Y轴平移量(单位：px)
+     */
+    public static final int PROPERTY_TRANSLATION_Y = 2;
+    /**
+     * X轴缩放比例
+     */
+    public static final int PROPERTY_SCALE_X = 3;
+    /**
+     * Y轴缩放比例
+     */
+    public static final int PROPERTY_SCALE_Y = 4;
+    /**
+     * 高度(单位：px，Android 5.0以下无效)
+     */
+    public static final int PROPERTY_ELEVATION = 5;
+    /**
+     * 背景颜色(起始值和结束值为ARGB颜色，按各分量插值)
+     */
+    public static final int PROPERTY_BACKGROUND_COLOR = 6;
+
+    private final View mTarget;
+    private final int mProperty;
+    private final float mFromOffset;
+    private final float mToOffset;
+    private final Interpolator mInterpolator;
+    /**
+     * 颜色属性使用mStartColor和mEndColor，其他属性使用mStartValue和mEndValue
+     */
+    private final float mStartValue;
+    private final float mEndValue;
+    private final int mStartColor;
+    private final int mEndColor;
+    /**
+     * 上一次计算时的插值进度(尚未计算时为NaN)
+     */
+    private float mLastFraction = Float.NaN;
+
+    OffsetBinding(View target, int property, float fromOffset, float toOffset,
+                  float startValue, float endValue, int startColor, int endColor, Interpolator interpolator) {
+        if (target == null) {
+            throw new IllegalArgumentException("Binding target must not be null.");
+        }
+        if (property < PROPERTY_ALPHA || property > PROPERTY_BACKGROUND_COLOR) {
+            throw new IllegalArgumentException("Unknown binding property: " + property);
+        }
+        if (fromOffset == toOffset) {
+            throw new IllegalArgumentException("Binding offset range must not be empty.");
+        }
+        mTarget = target;
+        mProperty = property;
+        mFromOffset = fromOffset;
+        mToOffset = toOffset;
+        mStartValue = startValue;
+        mEndValue = endValue;
+        mStartColor = startColor;
+        mEndColor = endColor;
+        mInterpolator = interpolator;
+    }
+
+    /**
+     * 返回绑定的目标视图
+     */
+    public View getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * 返回绑定的属性
+     */
+    public int getProperty() {
+        return mProperty;
+    }
+
+    /**
+     * 根据滑动偏移量更新目标视图的属性
+     *
+     * @param slideOffset 滑动偏移量
+     */
+    void apply(float slideOffset) {
+        float fraction = (slideOffset - mFromOffset) / (mToOffset - mFromOffset);
+        fraction = Math.max(0, Math.min(fraction, 1));
+        if (fraction == mLastFraction) {
+            return;
+        }
+        mLastFraction = fraction;
+        final float interpolated = mInterpolator != null ? mInterpolator.getInterpolation(fraction) : fraction;
+        if (mProperty == PROPERTY_BACKGROUND_COLOR) {
+            mTarget.setBackgroundColor(blendColor(mStartColor, mEndColor, interpolated));
+            return;
+        }
+        final float value = mStartValue + (mEndValue - mStartValue) * interpolated;
+        switch (mProperty) {
+            case PROPERTY_ALPHA:
+                ViewCompat.setAlpha(mTarget, value);
+                break;
+            case PROPERTY_TRANSLATION_X:
+                ViewCompat.setTranslationX(mTarget, value);
+                break;
+            case PROPERTY_TRANSLATION_Y:
+                ViewCompat.setTranslationY(mTarget, value);
+                break;
+            case PROPERTY_SCALE_X:
+                ViewCompat.setScaleX(mTarget, value);
+                break;
+            case PROPERTY_SCALE_Y:
+                ViewCompat.setScaleY(mTarget, value);
+                break;
+            case PROPERTY_ELEVATION:
+                ViewCompat.setElevation(mTarget, value);
+                break;
+        }
+    }
+
+    /**
+     * 按ARGB各分量插值两个颜色
+     */
+    private static int blendColor(int startColor, int endColor, float fraction) {
+        final int a = blendComponent(startColor >>> 24, endColor >>> 24, fraction);
+        final int r = blendComponent((startColor >> 16) & 0xff, (endColor >> 16) & 0xff, fraction);
+        final int g = blendComponent((startColor >> 8) & 0xff, (endColor >> 8) & 0xff, fraction);
+        final int b = blendComponent(startColor & 0xff, endColor & 0xff, fraction);
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+    private static int blendComponent(int start, int end, float fraction) {
+        return Math.max(0, Math.min(Math.round(start + (end - start) * fraction), 0xff));
+    }
+}
@@ -0,0 +1,175 @@
+package com.henley.slidinguppanel;
+
+import com.henley.slidinguppanel.SlidingUpPanelLayout.DropPolicy;
+import com.henley.slidinguppanel.SlidingUpPanelLayout.PanelObserver;
+import com.henley.slidinguppanel.SlidingUpPanelLayout.PanelState;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 滑动面板事件的后台分发通道(每个{@link PanelObserver}对应一个通道)
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>事件保存在容量固定的环形缓冲区中(并行数组，创建后不再分配内存)，主线程写入，观察者的{@link Executor}读取
+ * <li>读写位置是单调递增的{@link AtomicLong}，不加锁；同一时刻最多只有一个读取任务在执行
+ * <li>缓冲区已满时按{@link DropPolicy}丢弃最新或最旧的事件，主线程写入事件永远不会等待观察者
+ * <li>{@link DropPolicy#DROP_OLDEST}时主线程可能覆盖正在被读取的位置，读取方在移动读取位置失败时丢弃读到的数据
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+final class PanelEventChannel {
+
+    private static final int EVENT_SLIDE = 0;
+    private static final int EVENT_STATE = 1;
+    private static final PanelState[] STATES = PanelState.values();
+
+    private final PanelObserver mObserver;
+    private final Executor mExecutor;
+    private final DropPolicy mDropPolicy;
+    private final int mCapacity;
+
+    private final int[] mTypes;
+    private final float[] mOffsets;
+    private final int[] mPreviousStates;
+    private final int[] mStates;
+    private final long[] mTimestamps;
+    /**
+     * 下一个读取的位置和下一个写入的位置(对容量取余得到数组下标)
+     */
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    /**
+     * 是否已经提交了读取任务
+     */
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+    private volatile boolean mClosed;
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    PanelEventChannel(PanelObserver observer, Executor executor, int capacity, DropPolicy dropPolicy) {
+        if (observer == null || executor == null || dropPolicy == null) {
+            throw new IllegalArgumentException("Observer, executor and drop policy must not be null.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        }
+        mObserver = observer;
+        mExecutor = executor;
+        mDropPolicy = dropPolicy;
+        mCapacity = capacity;
+        mTypes = new int[capacity];
+        mOffsets = new float[capacity];
+        mPreviousStates = new int[capacity];
+        mStates = new int[capacity];
+        mTimestamps = new long[capacity];
+    }
+
+    PanelObserver getObserver() {
+        return mObserver;
+    }
+
+    /**
+     * 写入一个滑动偏移量事件(只能在主线程调用)
+     */
+    void postSlide(float slideOffset, long timestampNanos) {
+        post(EVENT_SLIDE, slideOffset, 0, 0, timestampNanos);
+    }
+
+    /**
+     * 写入一个状态改变事件(只能在主线程调用)
+     */
+    void postStateChanged(PanelState previousState, PanelState newState, long timestampNanos) {
+        post(EVENT_STATE, 0, previousState.ordinal(), newState.ordinal(), timestampNanos);
+    }
+
+    /**
+     * 关闭通道，尚未读取的事件不再分发
+     */
+    void close() {
+        mClosed = true;
+    }
+
+    private void post(int type, float offset, int previousState, int state, long timestampNanos) {
+        if (mClosed) {
+            return;
+        }
+        final long tail = mTail.get();
+        long head = mHead.get();
+        while (tail - head >= mCapacity) {
+            if (mDropPolicy == DropPolicy.DROP_NEWEST) {
+                return;
+            }
+            // 丢弃最旧的事件；读取方可能同时移动了读取位置，失败后重新判断
+            if (mHead.compareAndSet(head, head + 1)) {
+                break;
+            }
+            head = mHead.get();
+        }
+        final int index = (int) (tail % mCapacity);
+        mTypes[index] = type;
+        mOffsets[index] = offset;
+        mPreviousStates[index] = previousState;
+        mStates[index] = state;
+        mTimestamps[index] = timestampNanos;
+        // 写入位置的volatile写保证读取方能看到上面写入的数据
+        mTail.set(tail + 1);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            try {
+                mExecutor.execute(mDrainTask);
+            } catch (RejectedExecutionException e) {
+                // 执行器已关闭，事件留在缓冲区中等待下一次写入时重试
+                mDrainScheduled.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            try {
+                drainAvailable();
+            } finally {
+                // 观察者抛出异常时也要清除标记，否则之后的事件不会再被读取
+                mDrainScheduled.set(false);
+            }
+            // 清除标记之前写入的事件可能没有提交新的读取任务，由当前任务继续读取
+        } while (!mClosed && mHead.get() != mTail.get() && mDrainScheduled.compareAndSet(false, true));
+    }
+
+    private void drainAvailable() {
+        while (!mClosed) {
+            final long head = mHead.get();
+            if (head == mTail.get()) {
+                return;
+            }
+            final int index = (int) (head % mCapacity);
+            final int type = mTypes[index];
+            final float offset = mOffsets[index];
+            final int previousState = mPreviousStates[index];
+            final int state = mStates[index];
+            final long timestamp = mTimestamps[index];
+            if (!mHead.compareAndSet(head, head + 1)) {
+                // 该位置已被主线程丢弃并覆盖，读到的数据无效
+                continue;
+            }
+            if (type == EVENT_SLIDE) {
+                mObserver.onPanelSlideSample(offset, timestamp);
+            } else {
+                mObserver.onPanelStateTransition(STATES[previousState], STATES[state], timestamp);
+            }
+        }
+    }
+}
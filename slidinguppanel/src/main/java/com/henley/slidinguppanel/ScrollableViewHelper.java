@@ -1,25 +1,194 @@
 package com.henley.slidinguppanel;
 
+import android.os.Build;
+import android.support.v4.view.ViewPager;
 import android.support.v4.widget.NestedScrollView;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.widget.AbsListView;
 import android.widget.ListView;
 import android.widget.ScrollView;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * 确定滚动视图当前的滚动位置辅助类(目前仅支持部分常用滚动视图，但是可以通过重写来添加对其他视图的支持)
+ * 确定滚动视图当前的滚动位置辅助类(按滚动视图的类型注册计算策略，可以通过{@link #registerStrategy(Class, ScrollPositionStrategy)}添加对其他视图的支持)
  * <ul>
  * <strong>目前支持的滚动视图：</strong>
  * <li>{@link ScrollView}
  * <li>{@link NestedScrollView}
- * <li>{@link ListView}
+ * <li>{@link ListView}(以及其他{@link AbsListView})
  * <li>{@link RecyclerView}
+ * <li>{@link WebView}
+ * <li>{@link ViewPager}(计算当前页面中的滚动视图)
+ * <li>其他视图通过{@link View#canScrollVertically(int)}判断
+ * </ul>
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>查找策略时从视图的类开始依次查找其父类，结果按类缓存
+ * <li>{@link SlidingUpPanelLayout}在设置滚动视图时解析一次策略，之后的触摸事件直接调用该策略
+ * <li>注册策略应该在设置滚动视图之前进行
  * </ul>
  *
  * @author Henley
  * @date 2017/7/20 10:42
  */
 public class ScrollableViewHelper {
+
+    /**
+     * 滚动视图的滚动位置计算策略
+     */
+    public interface ScrollPositionStrategy {
+        /**
+         * 返回滚动视图距离滑动面板收起方向边缘的滚动距离
+         *
+         * @param scrollableView 滚动视图
+         * @param isSlidingUp    滑动面板是否向上滑动为展开
+         * @return 滚动视图当前的滚动位置(大于零表示滚动视图应该优先处理收起方向的滑动)
+         */
+        int getScrollPosition(View scrollableView, boolean isSlidingUp);
+    }
+
+    /**
+     * 没有注册策略的视图通过{@link View#canScrollVertically(int)}判断
+     */
+    private static final ScrollPositionStrategy DEFAULT_STRATEGY = new ScrollPositionStrategy() {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            return scrollableView.canScrollVertically(isSlidingUp ? -1 : 1) ? 1 : 0;
+        }
+    };
+
+    /**
+     * 注册的策略
+     */
+    private final Map<Class<?>, ScrollPositionStrategy> mStrategies = new HashMap<>();
+    /**
+     * 按视图的类缓存的查找结果
+     */
+    private final Map<Class<?>, ScrollPositionStrategy> mResolvedStrategies = new HashMap<>();
+    /**
+     * 子类重写了{@link #getScrollableViewScrollPosition(View, boolean)}时，解析出的策略调用该方法
+     */
+    private final ScrollPositionStrategy mOverriddenStrategy;
+    /**
+     * 支持库中的滚动视图是否存在(不存在时不能引用其类型)
+     */
+    private final boolean mHasNestedScrollView;
+    private final boolean mHasRecyclerView;
+    /**
+     * ViewPager的策略(ViewPager本身水平滚动，只计算当前页面中的滚动视图)
+     */
+    private ScrollPositionStrategy mViewPagerStrategy;
+
+    public ScrollableViewHelper() {
+        final SingleChildScrollStrategy singleChildStrategy = new SingleChildScrollStrategy();
+        registerStrategy(ScrollView.class, singleChildStrategy);
+        registerStrategy(AbsListView.class, new AbsListViewStrategy());
+        registerStrategy(WebView.class, new WebViewStrategy());
+        // 支持库中的视图只在其存在时注册
+        mHasNestedScrollView = isClassAvailable("android.support.v4.widget.NestedScrollView");
+        if (mHasNestedScrollView) {
+            registerStrategy(NestedScrollView.class, singleChildStrategy);
+        }
+        mHasRecyclerView = isClassAvailable("android.support.v7.widget.RecyclerView");
+        if (mHasRecyclerView) {
+            registerStrategy(RecyclerView.class, new RecyclerViewStrategy());
+        }
+        if (isClassAvailable("android.support.v4.view.ViewPager")) {
+            mViewPagerStrategy = new ViewPagerStrategy();
+            registerStrategy(ViewPager.class, mViewPagerStrategy);
+        }
+        mOverriddenStrategy = overridesScrollPosition() ? new ScrollPositionStrategy() {
+            @Override
+            public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+                return getScrollableViewScrollPosition(scrollableView, isSlidingUp);
+            }
+        } : null;
+    }
+
+    /**
+     * 注册指定类型(及其子类)的滚动视图的滚动位置计算策略
+     *
+     * @param viewClass 滚动视图的类型
+     * @param strategy  滚动位置计算策略
+     */
+    public void registerStrategy(Class<? extends View> viewClass, ScrollPositionStrategy strategy) {
+        if (viewClass == null || strategy == null) {
+            throw new IllegalArgumentException("View class and strategy must not be null.");
+        }
+        mStrategies.put(viewClass, strategy);
+        mResolvedStrategies.clear();
+    }
+
+    /**
+     * 移除指定类型的滚动视图的滚动位置计算策略
+     *
+     * @param viewClass 滚动视图的类型
+     */
+    public void unregisterStrategy(Class<? extends View> viewClass) {
+        if (mStrategies.remove(viewClass) != null) {
+            mResolvedStrategies.clear();
+        }
+    }
+
+    /**
+     * 返回指定滚动视图的滚动位置计算策略
+     *
+     * @param scrollableView 滚动视图
+     * @return 滚动位置计算策略(从视图的类开始依次查找其父类，都没有注册则使用{@link View#canScrollVertically(int)}判断)
+     */
+    public ScrollPositionStrategy resolveStrategy(View scrollableView) {
+        if (mOverriddenStrategy != null) {
+            return mOverriddenStrategy;
+        }
+        return resolveRegisteredStrategy(scrollableView.getClass());
+    }
+
+    /**
+     * 判断指定视图是否为垂直滚动视图(注册了策略且按垂直方向滚动，或者当前可以垂直滚动)
+     * <p>水平方向的{@link RecyclerView}、{@link ViewPager}等视图不是垂直滚动视图，
+     * 在其上开始的垂直拖动仍然由滑动面板处理</p>
+     *
+     * @param view View对象
+     */
+    public boolean isScrollableView(View view) {
+        final ScrollPositionStrategy strategy = resolveRegisteredStrategy(view.getClass());
+        if (strategy == DEFAULT_STRATEGY || strategy == mViewPagerStrategy) {
+            // ViewPager本身水平滚动，页面中的垂直滚动视图会被单独查找
+            return view.canScrollVertically(1) || view.canScrollVertically(-1);
+        }
+        if (mHasRecyclerView && view instanceof RecyclerView) {
+            return isVerticalRecyclerView((RecyclerView) view);
+        }
+        return true;
+    }
+
+    /**
+     * 判断RecyclerView是否按垂直方向滚动
+     */
+    private static boolean isVerticalRecyclerView(RecyclerView recyclerView) {
+        final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        return layoutManager != null && layoutManager.canScrollVertically();
+    }
+
+    private ScrollPositionStrategy resolveRegisteredStrategy(Class<?> viewClass) {
+        ScrollPositionStrategy strategy = mResolvedStrategies.get(viewClass);
+        if (strategy == null) {
+            for (Class<?> cls = viewClass; cls != null && strategy == null; cls = cls.getSuperclass()) {
+                strategy = mStrategies.get(cls);
+            }
+            if (strategy == null) {
+                strategy = DEFAULT_STRATEGY;
+            }
+            mResolvedStrategies.put(viewClass, strategy);
+        }
+        return strategy;
+    }
+
     /**
      * 滚动视图当前的滚动位置辅助类
      * <ul>
@@ -36,49 +205,195 @@ public class ScrollableViewHelper {
         if (scrollableView == null) {
             return 0;
         }
+        return resolveRegisteredStrategy(scrollableView.getClass()).getScrollPosition(scrollableView, isSlidingUp);
+    }
+
+    /**
+     * 让滚动视图以指定的速度惯性滚动(用于将滑动面板展开后剩余的速度传递给滚动视图)
+     *
+     * @param scrollableView 滚动视图
+     * @param velocityY      垂直方向的速度(单位：像素每秒，大于零表示向内容底部滚动)
+     * @return 滚动视图是否开始惯性滚动
+     */
+    public boolean flingScrollableView(View scrollableView, int velocityY) {
+        if (scrollableView == null || velocityY == 0
+                || !scrollableView.canScrollVertically(velocityY > 0 ? 1 : -1)) {
+            return false;
+        }
+        if (mHasRecyclerView && scrollableView instanceof RecyclerView) {
+            return ((RecyclerView) scrollableView).fling(0, velocityY);
+        }
+        if (mHasNestedScrollView && scrollableView instanceof NestedScrollView) {
+            ((NestedScrollView) scrollableView).fling(velocityY);
+            return true;
+        }
         if (scrollableView instanceof ScrollView) {
+            ((ScrollView) scrollableView).fling(velocityY);
+            return true;
+        }
+        if (scrollableView instanceof AbsListView && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            ((AbsListView) scrollableView).fling(velocityY);
+            return true;
+        }
+        if (scrollableView instanceof WebView) {
+            ((WebView) scrollableView).flingScroll(0, velocityY);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断子类是否重写了{@link #getScrollableViewScrollPosition(View, boolean)}(兼容通过重写添加支持的方式)
+     */
+    private boolean overridesScrollPosition() {
+        try {
+            return getClass().getMethod("getScrollableViewScrollPosition", View.class, boolean.class)
+                    .getDeclaringClass() != ScrollableViewHelper.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, ScrollableViewHelper.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 只有一个子视图的滚动视图({@link ScrollView}、{@link NestedScrollView})
+     */
+    private static final class SingleChildScrollStrategy implements ScrollPositionStrategy {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
             if (isSlidingUp) {
                 return scrollableView.getScrollY();
-            } else {
-                ScrollView scrollView = ((ScrollView) scrollableView);
-                View child = scrollView.getChildAt(0);
-                return (child.getBottom() - (scrollView.getHeight() + scrollView.getScrollY()));
             }
-        } else if (scrollableView instanceof NestedScrollView) {
-            if (isSlidingUp) {
-                return scrollableView.getScrollY();
-            } else {
-                NestedScrollView scrollView = ((NestedScrollView) scrollableView);
-                View child = scrollView.getChildAt(0);
-                return (child.getBottom() - (scrollView.getHeight() + scrollView.getScrollY()));
+            final ViewGroup scrollView = (ViewGroup) scrollableView;
+            final View child = scrollView.getChildAt(0);
+            if (child == null) {
+                return 0;
+            }
+            return child.getBottom() - (scrollView.getHeight() + scrollView.getScrollY());
+        }
+    }
+
+    /**
+     * {@link ListView}等列表视图
+     * <p>canScrollList只比较边缘的子视图和列表的内边距，结果精确且与列表项的数量和高度无关</p>
+     */
+    private static final class AbsListViewStrategy implements ScrollPositionStrategy {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            final AbsListView listView = (AbsListView) scrollableView;
+            if (listView.getChildCount() == 0 || listView.getAdapter() == null) {
+                return 0;
             }
-        } else if (scrollableView instanceof ListView && ((ListView) scrollableView).getChildCount() > 0) {
-            ListView listView = ((ListView) scrollableView);
-            if (listView.getAdapter() == null) return 0;
             if (isSlidingUp) {
+                if (!listView.canScrollList(-1)) return 0;
                 View firstChild = listView.getChildAt(0);
-                // Approximate the scroll position based on the top child and the first visible item
-                return listView.getFirstVisiblePosition() * firstChild.getHeight() - firstChild.getTop();
+                // Only exact while the first item is visible, otherwise an approximation that is always positive
+                return Math.max(1, listView.getFirstVisiblePosition() * firstChild.getHeight()
+                        + listView.getListPaddingTop() - firstChild.getTop());
             } else {
+                if (!listView.canScrollList(1)) return 0;
                 View lastChild = listView.getChildAt(listView.getChildCount() - 1);
-                // Approximate the scroll position based on the bottom child and the last visible item
-                return (listView.getAdapter().getCount() - listView.getLastVisiblePosition() - 1) * lastChild.getHeight() + lastChild.getBottom() - listView.getBottom();
+                // Only exact while the last item is visible, otherwise an approximation that is always positive
+                return Math.max(1, (listView.getAdapter().getCount() - listView.getLastVisiblePosition() - 1) * lastChild.getHeight()
+                        + lastChild.getBottom() - (listView.getHeight() - listView.getListPaddingBottom()));
+            }
+        }
+    }
+
+    /**
+     * {@link RecyclerView}
+     * <p>使用LayoutManager提供的滚动范围，与{@link View#canScrollVertically(int)}的判断方式一致；
+     * 水平方向的列表始终返回0</p>
+     */
+    private static final class RecyclerViewStrategy implements ScrollPositionStrategy {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            final RecyclerView recyclerView = (RecyclerView) scrollableView;
+            if (recyclerView.getChildCount() == 0 || recyclerView.getAdapter() == null
+                    || !isVerticalRecyclerView(recyclerView)) {
+                // 水平列表不处理垂直方向的滑动
+                return 0;
             }
-        } else if (scrollableView instanceof RecyclerView && ((RecyclerView) scrollableView).getChildCount() > 0) {
-            RecyclerView recyclerView = ((RecyclerView) scrollableView);
-            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
-            if (recyclerView.getAdapter() == null) return 0;
+            final int offset = recyclerView.computeVerticalScrollOffset();
+            final int range = recyclerView.computeVerticalScrollRange() - recyclerView.computeVerticalScrollExtent();
             if (isSlidingUp) {
-                View firstChild = recyclerView.getChildAt(0);
-                // Approximate the scroll position based on the top child and the first visible item
-                return recyclerView.getChildLayoutPosition(firstChild) * layoutManager.getDecoratedMeasuredHeight(firstChild) - layoutManager.getDecoratedTop(firstChild);
+                return Math.max(offset, 0);
             } else {
-                View lastChild = recyclerView.getChildAt(recyclerView.getChildCount() - 1);
-                // Approximate the scroll position based on the bottom child and the last visible item
-                return (recyclerView.getAdapter().getItemCount() - 1) * layoutManager.getDecoratedMeasuredHeight(lastChild) + layoutManager.getDecoratedBottom(lastChild) - recyclerView.getBottom();
+                return offset < range - 1 ? range - offset : 0;
             }
-        } else {
-            return 0;
+        }
+    }
+
+    /**
+     * {@link WebView}
+     */
+    private static final class WebViewStrategy implements ScrollPositionStrategy {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            if (isSlidingUp) {
+                return scrollableView.getScrollY();
+            }
+            return scrollableView.canScrollVertically(1) ? 1 : 0;
+        }
+    }
+
+    /**
+     * {@link ViewPager}：计算当前页面中的滚动视图
+     */
+    private final class ViewPagerStrategy implements ScrollPositionStrategy {
+        @Override
+        public int getScrollPosition(View scrollableView, boolean isSlidingUp) {
+            final View page = findCurrentPage((ViewPager) scrollableView);
+            final View pageScrollableView = page != null ? findScrollableView(page) : null;
+            if (pageScrollableView == null) {
+                return 0;
+            }
+            return resolveRegisteredStrategy(pageScrollableView.getClass()).getScrollPosition(pageScrollableView, isSlidingUp);
+        }
+
+        /**
+         * 返回覆盖ViewPager水平中心的页面
+         */
+        private View findCurrentPage(ViewPager pager) {
+            final int center = pager.getScrollX() + pager.getWidth() / 2;
+            for (int i = 0, childCount = pager.getChildCount(); i < childCount; i++) {
+                final View child = pager.getChildAt(i);
+                final ViewPager.LayoutParams lp = (ViewPager.LayoutParams) child.getLayoutParams();
+                if (!lp.isDecor && child.getLeft() <= center && child.getRight() > center) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 深度优先查找页面中第一个注册了策略或者可以垂直滚动的视图
+         */
+        private View findScrollableView(View view) {
+            if (view.getVisibility() != View.VISIBLE) {
+                return null;
+            }
+            if (isScrollableView(view)) {
+                return view;
+            }
+            if (view instanceof ViewGroup) {
+                final ViewGroup group = (ViewGroup) view;
+                for (int i = 0, childCount = group.getChildCount(); i < childCount; i++) {
+                    final View scrollableView = findScrollableView(group.getChildAt(i));
+                    if (scrollableView != null) {
+                        return scrollableView;
+                    }
+                }
+            }
+            return null;
         }
     }
 }
@@ -0,0 +1,159 @@
+package com.henley.slidinguppanel;
+
+import android.support.v4.widget.NestedScrollView;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.webkit.WebView;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+/**
+ * 滚动视图滚动状态跟踪器
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>缓存滚动视图是否已经离开滑动面板收起方向的边缘(向上滑动为展开时即是否离开顶部)
+ * <li>只有滚动视图自身滚动或重新布局(尺寸、内容改变)时缓存才失效，其他视图的滚动和布局不影响缓存
+ * <li>RecyclerView通过其滚动监听判断是否滚动；ScrollView、NestedScrollView、WebView比较滚动位置；
+ * 列表视图比较第一个可见项的位置；其他视图(例如ViewPager)无法低成本判断，每次都重新计算
+ * <li>触摸事件只读取缓存的结果，缓存失效后才通过滚动视图的{@link ScrollableViewHelper.ScrollPositionStrategy}重新计算一次
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+final class ScrollableViewTracker implements View.OnLayoutChangeListener {
+
+    /**
+     * 支持库中的滚动视图是否存在(不存在时不能引用其类型)
+     */
+    private static final boolean HAS_RECYCLER_VIEW = ScrollableViewHelper.isClassAvailable("android.support.v7.widget.RecyclerView");
+    private static final boolean HAS_NESTED_SCROLL_VIEW = ScrollableViewHelper.isClassAvailable("android.support.v4.widget.NestedScrollView");
+
+    /**
+     * 滚动视图判断是否滚动的方式
+     */
+    private static final int KIND_UNTRACKED = 0;
+    private static final int KIND_RECYCLER_VIEW = 1;
+    private static final int KIND_SCROLL_Y = 2;
+    private static final int KIND_LIST = 3;
+
+    private View mScrollableView;
+    private int mKind = KIND_UNTRACKED;
+    /**
+     * RecyclerView的滚动监听(只在滚动视图是RecyclerView时创建)
+     */
+    private RecyclerView.OnScrollListener mRecyclerScrollListener;
+    /**
+     * 计算缓存结果时使用的策略、滑动方向和滚动视图的滚动位置，改变后缓存失效
+     */
+    private ScrollableViewHelper.ScrollPositionStrategy mStrategy;
+    private boolean mIsSlidingUp;
+    private long mScrollSignature;
+    private boolean mScrolledFromEdge;
+    private boolean mDirty = true;
+
+    /**
+     * 设置跟踪的滚动视图
+     *
+     * @param scrollableView 滚动视图
+     */
+    void setScrollableView(View scrollableView) {
+        if (mScrollableView == scrollableView) {
+            return;
+        }
+        if (mScrollableView != null) {
+            mScrollableView.removeOnLayoutChangeListener(this);
+            if (mKind == KIND_RECYCLER_VIEW) {
+                ((RecyclerView) mScrollableView).removeOnScrollListener(mRecyclerScrollListener);
+            }
+        }
+        mScrollableView = scrollableView;
+        mKind = resolveKind(scrollableView);
+        if (scrollableView != null) {
+            scrollableView.addOnLayoutChangeListener(this);
+            if (mKind == KIND_RECYCLER_VIEW) {
+                if (mRecyclerScrollListener == null) {
+                    mRecyclerScrollListener = new RecyclerView.OnScrollListener() {
+                        @Override
+                        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                            mDirty = true;
+                        }
+                    };
+                }
+                ((RecyclerView) scrollableView).addOnScrollListener(mRecyclerScrollListener);
+            }
+        }
+        mDirty = true;
+    }
+
+    /**
+     * 使缓存失效(例如滚动位置的计算策略改变后)
+     */
+    void invalidate() {
+        mDirty = true;
+    }
+
+    /**
+     * 返回滚动视图是否已经离开滑动面板收起方向的边缘(此时滚动视图应该优先处理收起方向的滑动)
+     *
+     * @param strategy    滚动视图的滚动位置计算策略
+     * @param isSlidingUp 滑动面板是否向上滑动为展开
+     */
+    boolean isScrolledFromEdge(ScrollableViewHelper.ScrollPositionStrategy strategy, boolean isSlidingUp) {
+        if (mScrollableView == null || strategy == null) {
+            return false;
+        }
+        final long signature = computeScrollSignature();
+        if (mDirty || mKind == KIND_UNTRACKED || strategy != mStrategy || isSlidingUp != mIsSlidingUp
+                || signature != mScrollSignature) {
+            mStrategy = strategy;
+            mIsSlidingUp = isSlidingUp;
+            mScrollSignature = signature;
+            mScrolledFromEdge = strategy.getScrollPosition(mScrollableView, isSlidingUp) > 0;
+            mDirty = false;
+        }
+        return mScrolledFromEdge;
+    }
+
+    @Override
+    public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                               int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        // 滚动视图自身重新布局：尺寸或内容可能改变
+        mDirty = true;
+    }
+
+    private static int resolveKind(View view) {
+        if (view == null) {
+            return KIND_UNTRACKED;
+        }
+        if (HAS_RECYCLER_VIEW && view instanceof RecyclerView) {
+            return KIND_RECYCLER_VIEW;
+        }
+        if (view instanceof AbsListView) {
+            return KIND_LIST;
+        }
+        if (view instanceof ScrollView || view instanceof WebView
+                || (HAS_NESTED_SCROLL_VIEW && view instanceof NestedScrollView)) {
+            return KIND_SCROLL_Y;
+        }
+        return KIND_UNTRACKED;
+    }
+
+    /**
+     * 不调用计算策略，低成本地读取能够反映滚动视图滚动位置的值
+     */
+    private long computeScrollSignature() {
+        switch (mKind) {
+            case KIND_SCROLL_Y:
+                return mScrollableView.getScrollY();
+            case KIND_LIST:
+                // 列表滚动时移动子视图而不改变scrollY，比较第一个可见项及其位置
+                final AbsListView listView = (AbsListView) mScrollableView;
+                final View firstChild = listView.getChildAt(0);
+                return (long) listView.getFirstVisiblePosition() << 32
+                        | (firstChild != null ? firstChild.getTop() & 0xffffffffL : 0);
+            default:
+                return 0;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.henley.slidinguppanel;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
@@ -7,21 +10,29 @@ import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v4.view.MotionEventCompat;
+import android.support.v4.view.NestedScrollingParent2;
+import android.support.v4.view.NestedScrollingParentHelper;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewConfiguration;
+import android.view.ViewParent;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * 滑动面板视图
@@ -40,7 +51,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @author Henley
  * @date 2017/7/20 10:41
  */
-public class SlidingUpPanelLayout extends ViewGroup {
+public class SlidingUpPanelLayout extends ViewGroup implements NestedScrollingParent2 {
 
     private static final String TAG = SlidingUpPanelLayout.class.getSimpleName();
 
@@ -91,10 +102,68 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 用于在Bundle中存储父布局状态的标记
      */
     public static final String SUPER_STATE = "superState";
+    /**
+     * 折叠位置对应的停靠点标识
+     */
+    public static final int SNAP_POINT_COLLAPSED = -1;
+    /**
+     * 锚点对应的停靠点标识(只有锚点小于1时存在)
+     */
+    public static final int SNAP_POINT_ANCHORED = -2;
+    /**
+     * 展开位置对应的停靠点标识
+     */
+    public static final int SNAP_POINT_EXPANDED = -3;
     /**
      * 默认组件初始状态
      */
     private static final PanelState DEFAULT_SLIDE_STATE = PanelState.COLLAPSED;
+    /**
+     * 停靠动画引擎：默认引擎(基于{@link android.support.v4.widget.ScrollerCompat})
+     */
+    private static final int SETTLE_ENGINE_SCROLLER = 0;
+    /**
+     * 停靠动画引擎：{@link SpringSettleEngine}
+     */
+    private static final int SETTLE_ENGINE_SPRING = 1;
+    /**
+     * 停靠动画引擎：{@link DecaySettleEngine}
+     */
+    private static final int SETTLE_ENGINE_DECAY = 2;
+    /**
+     * 默认主视图尺寸调整策略
+     */
+    private static final ResizeMode DEFAULT_RESIZE_MODE = ResizeMode.RELAYOUT;
+    /**
+     * 默认是否在滑动过程中将子视图提升为硬件层
+     */
+    private static final boolean DEFAULT_LAYER_PROMOTION_FLAG = false;
+    /**
+     * 默认是否自动查找按下位置的滚动视图
+     */
+    private static final boolean DEFAULT_AUTO_SCROLLABLE_VIEW_FLAG = false;
+    /**
+     * 默认是否将展开后剩余的惯性速度传递给滚动视图
+     */
+    private static final boolean DEFAULT_FLING_HANDOFF_FLAG = false;
+    /**
+     * 默认是否预测拖动时触摸点的位置
+     */
+    private static final boolean DEFAULT_TOUCH_PREDICTION_FLAG = false;
+    /**
+     * 默认是否每帧最多分发一次滑动事件
+     */
+    private static final boolean DEFAULT_SLIDE_COALESCING_FLAG = false;
+    /**
+     * 滑动面板面积小于布局面积的该比例时不提升为硬件层(重新绘制较小的面板比维护硬件层开销更低)
+     */
+    private static final float MIN_LAYER_AREA_FRACTION = 0.1f;
+    private static final PanelSlideListener[] EMPTY_PANEL_SLIDE_LISTENERS = new PanelSlideListener[0];
+    private static final PanelEventChannel[] EMPTY_PANEL_EVENT_CHANNELS = new PanelEventChannel[0];
+    /**
+     * 默认后台观察者的事件缓冲区容量
+     */
+    private static final int DEFAULT_OBSERVER_CAPACITY = 64;
     /**
      * 滑动面板的高度(单位：px)
      */
@@ -135,6 +204,14 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 主视图是否被裁剪到滑动面板的顶部
      */
     private boolean mClipPanel = DEFAULT_CLIP_PANEL_FLAG;
+    /**
+     * 面板不覆盖内容时主视图的尺寸调整策略
+     */
+    private ResizeMode mResizeMode = DEFAULT_RESIZE_MODE;
+    /**
+     * {@link ResizeMode#CLIP}策略下，拖动过程中主视图为跟随面板而临时附加的Y轴平移量(单位：px)
+     */
+    private int mMainViewDragTranslation;
     /**
      * 可以滑动的子视图(可以没有)
      */
@@ -163,6 +240,62 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 确定滚动视图当前的滚动位置辅助类
      */
     private ScrollableViewHelper mScrollableViewHelper = new ScrollableViewHelper();
+    /**
+     * 当前手势使用的滚动视图(自动查找时为按下位置的滚动视图，否则与mScrollableView相同)
+     */
+    private View mTouchScrollableView;
+    /**
+     * 设置mTouchScrollableView时解析出的滚动位置计算策略
+     */
+    private ScrollableViewHelper.ScrollPositionStrategy mScrollableViewStrategy;
+    /**
+     * 是否在每次按下时自动查找按下位置的滚动视图
+     */
+    private boolean mAutoScrollableView = DEFAULT_AUTO_SCROLLABLE_VIEW_FLAG;
+    /**
+     * 滑动面板中的滚动视图索引(按深度优先的顺序，布局改变后重新建立)
+     */
+    private final List<View> mScrollableViewCandidates = new ArrayList<>();
+    private boolean mScrollableViewCandidatesDirty = true;
+    /**
+     * 是否将展开后剩余的惯性速度传递给滚动视图
+     */
+    private boolean mFlingHandoffEnabled = DEFAULT_FLING_HANDOFF_FLAG;
+    /**
+     * 面板停靠到展开位置后需要传递给滚动视图的速度(单位：像素每秒，展开方向为正)
+     */
+    private float mPendingHandoffVelocity;
+    /**
+     * 估算惯性滑动剩余速度使用的减速度(单位：像素每二次方秒，与{@link android.widget.Scroller}的摩擦模型一致)
+     */
+    private final float mFlingDeceleration;
+    /**
+     * 缓存滚动视图的滚动状态，触摸事件中只读取缓存
+     */
+    private final ScrollableViewTracker mScrollableViewTracker = new ScrollableViewTracker();
+    /**
+     * 是否按面板的可见区域测量滚动视图(避免折叠状态下的滚动视图绑定看不见的列表项)
+     */
+    private boolean mViewportAware;
+    /**
+     * 面板已经显示过的高度(单位：px，只增不减)
+     */
+    private int mRevealedExtent;
+    /**
+     * 滚动视图当前是否被限制在面板的可见区域内
+     */
+    private boolean mScrollableViewClipped;
+    /**
+     * 第一次布局完成后按面板的可见区域重新测量滚动视图
+     */
+    private final Runnable mViewportMeasureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mViewportAware && mScrollableView != null) {
+                mScrollableView.requestLayout();
+            }
+        }
+    };
     /**
      * 当前滑动状态
      */
@@ -176,14 +309,46 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * <br>0表示折叠状态，1表示展开状态
      */
     private float mSlideOffset;
+    /**
+     * 上一次布局时的滑动偏移量(用于在偏移量未变化时跳过视差计算)
+     */
+    private float mLayoutSlideOffset = Float.NaN;
     /**
      * 滑动面板可以滑动的距离(单位：px)
      */
     private int mSlideRange;
+    /**
+     * 计算{@link #mSlideRange}时使用的滑动面板高度(单位：px)
+     */
+    private int mSlideRangePanelHeight = DEFAULT_UNDEFINED;
+    /**
+     * 上一次测量时的子视图(用于判断测量缓存是否仍然属于同一个子视图)
+     */
+    private final View[] mMeasuredChildren = new View[2];
+    /**
+     * 上一次测量子视图时使用的宽度测量规格
+     */
+    private final int[] mChildWidthMeasureSpecs = new int[2];
+    /**
+     * 上一次测量子视图时使用的高度测量规格(已包含面板高度、覆盖模式、面板状态和权重的影响)
+     */
+    private final int[] mChildHeightMeasureSpecs = new int[2];
+    /**
+     * 子视图在上一次布局之后是否被重新测量过(测量过的子视图必须重新布局，在onLayout中清除)
+     */
+    private final boolean[] mChildMeasuredSinceLayout = new boolean[2];
     /**
      * 在滑动时面板可以停止的锚点(有效值范围[0,1])
      */
     private float mAnchorPoint = 1.f;
+    /**
+     * 滑动面板的停靠点集合(包含折叠位置、锚点、展开位置和自定义的停靠点)
+     */
+    private final SnapPointSet mSnapPoints = new SnapPointSet();
+    /**
+     * 停靠点事件监听
+     */
+    private PanelSnapListener mPanelSnapListener;
     /**
      * 是否不能继续拖动(面板视图被锁定到内部滚动或防止拖动的另一个条件)
      */
@@ -200,18 +365,120 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 是否正在处理滚动视图的触摸事件
      */
     private boolean mIsScrollableViewHandlingTouch = false;
+    /**
+     * 当前手势是否由支持嵌套滚动的滚动视图通过嵌套滚动接口分配滑动距离
+     */
+    private boolean mIsNestedScrollGesture = false;
+    /**
+     * 滑动面板是否正在被嵌套滚动拖动
+     */
+    private boolean mIsNestedDragging = false;
+    /**
+     * 滚动视图惯性滑动的上一帧时间和速度(单位：像素每秒，以惯性滑动的初始速度开始，之后由相邻两帧的滚动距离估算)
+     */
+    private long mNestedFlingFrameTime;
+    private float mNestedFlingVelocity;
+    /**
+     * 滚动视图即将开始的惯性滑动的初始速度(在{@link #onNestedFling(View, float, float, boolean)}中记录，
+     * 惯性滑动的嵌套滚动开始时作为速度估算的初始值)
+     */
+    private float mPendingNestedFlingVelocity;
+    /**
+     * 本次惯性滑动剩余的速度是否已经交给面板
+     */
+    private boolean mNestedFlingHandedOff;
+    private final NestedScrollingParentHelper mNestedScrollingParentHelper = new NestedScrollingParentHelper(this);
     /**
      * 蒙层点击事件监听
      */
     private OnClickListener mFadeOnClickListener;
     /**
-     * Panel滑动动作监听集合
+     * Panel滑动动作监听集合(不可变数组快照，添加和移除时整体替换，分发时不加锁也不分配内存)
+     */
+    private final SnapshotArray<PanelSlideListener> mPanelSlideListeners = new SnapshotArray<>(EMPTY_PANEL_SLIDE_LISTENERS);
+    /**
+     * 后台观察者的事件通道(与mPanelSlideListeners一样使用数组快照)
+     */
+    private final SnapshotArray<PanelEventChannel> mPanelEventChannels = new SnapshotArray<>(EMPTY_PANEL_EVENT_CHANNELS);
+    /**
+     * 是否每帧最多分发一次滑动事件(合并同一帧内的多次位置改变，只分发最新的滑动偏移量)
+     */
+    private boolean mSlideCoalescingEnabled = DEFAULT_SLIDE_COALESCING_FLAG;
+    /**
+     * 滑动偏移量和像素位置相对上一次分发的变化量小于该值时不分发滑动事件(到达停靠点时总是分发)
+     */
+    private float mSlideOffsetEpsilon;
+    private int mSlidePixelThreshold;
+    /**
+     * 上一次分发的滑动偏移量(尚未分发时为NaN)
+     */
+    private float mDispatchedSlideOffset = Float.NaN;
+    /**
+     * 是否已经提交了下一帧的滑动事件分发
      */
-    private final List<PanelSlideListener> mPanelSlideListeners = new CopyOnWriteArrayList<>();
+    private boolean mSlideDispatchScheduled;
+    /**
+     * 滑动偏移量与视图属性的绑定(更新视差之后依次计算)
+     */
+    private final List<OffsetBinding> mOffsetBindings = new ArrayList<>();
+    private final Choreographer.FrameCallback mSlideDispatchFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mSlideDispatchScheduled = false;
+            dispatchOnPanelSlideIfChanged();
+        }
+    };
     /**
      * 用于处理滑动的细节的辅助类
      */
     private final ViewDragHelper mDragHelper;
+    /**
+     * 在每一帧的垂直同步信号到来时推进停靠动画
+     */
+    private final SettleFrameCallback mSettleFrameCallback = new SettleFrameCallback();
+    /**
+     * 是否已经提交了下一帧的停靠动画回调
+     */
+    private boolean mSettleFrameScheduled;
+    /**
+     * 是否使用属性动画完成停靠
+     */
+    private boolean mSettleAnimatorEnabled;
+    /**
+     * 属性动画停靠使用的动画(第一次使用时创建)
+     */
+    private ValueAnimator mSettleAnimator;
+    /**
+     * 属性动画停靠使用的插值器(与DragHelper的默认停靠动画相同)
+     */
+    private Interpolator mSettleInterpolator;
+    /**
+     * 是否在滑动过程中将子视图提升为硬件层
+     */
+    private boolean mLayerPromotionEnabled = DEFAULT_LAYER_PROMOTION_FLAG;
+    /**
+     * 硬件层提升回调(可以阻止某个视图被提升)
+     */
+    private LayerPromotionCallback mLayerPromotionCallback;
+    /**
+     * 滑动面板/主视图当前是否由本布局提升为硬件层
+     */
+    private boolean mPanelLayerPromoted;
+    private boolean mMainLayerPromoted;
+    /**
+     * 滑动面板/主视图内容的刷新频率统计
+     */
+    private final InvalidationCounter mPanelInvalidations = new InvalidationCounter();
+    private final InvalidationCounter mMainInvalidations = new InvalidationCounter();
+    /**
+     * 内容刷新过于频繁时在下一帧撤销硬件层(不在刷新的调用过程中修改图层类型)
+     */
+    private final Runnable mDemoteBusyLayersRunnable = new Runnable() {
+        @Override
+        public void run() {
+            demoteBusyLayers();
+        }
+    };
     /**
      * Stores whether or not the pane was expanded the last time it was slideable.
      * If expand/collapse operations are invoked this state is modified. Used by
@@ -222,6 +489,16 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 绘制主视图和蒙层的矩形区域
      */
     private final Rect mTmpRect = new Rect();
+    /**
+     * 命中测试缓存(缓存子孙视图相对于其所在直接子视图的偏移量，每次按下和重新布局子视图时失效，同一个手势内保持不变)
+     */
+    private final ViewOffsetCache[] mViewOffsetCache = new ViewOffsetCache[]{
+            new ViewOffsetCache(), new ViewOffsetCache(), new ViewOffsetCache()
+    };
+    /**
+     * 下一个被替换的命中测试缓存索引
+     */
+    private int mNextViewOffsetCacheIndex;
 
     /**
      * 默认定义要解析的属性
@@ -256,6 +533,22 @@ public class SlidingUpPanelLayout extends ViewGroup {
         DRAGGING
     }
 
+    /**
+     * 面板不覆盖内容(即{@link #isOverlayed()}为false)时主视图的尺寸调整策略
+     */
+    public enum ResizeMode {
+        /**
+         * 每一帧拖动都修改主视图的高度并重新布局(默认策略)
+         */
+        RELAYOUT,
+        /**
+         * 拖动和惯性滑动过程中保持主视图尺寸不变，只通过平移和裁剪来显示主视图，
+         * 在{@link ViewDragHelper}回到空闲状态时才进行一次真正的布局；
+         * 隐藏面板时主视图在停靠开始前一次性调整到停靠过程中需要的最大尺寸
+         */
+        CLIP
+    }
+
     /**
      * Panel滑动事件监听器
      */
@@ -278,6 +571,73 @@ public class SlidingUpPanelLayout extends ViewGroup {
         void onPanelStateChanged(View panel, PanelState previousState, PanelState cunrentState);
     }
 
+    /**
+     * 滑动面板事件的后台观察者
+     * <p>事件先写入有界的环形缓冲区，再在添加观察者时提供的{@link Executor}上依次回调，
+     * 适合统计、日志等不需要在主线程同步处理的逻辑；回调的耗时不会影响主线程的绘制</p>
+     *
+     * @see #addPanelObserver(PanelObserver, Executor, int, DropPolicy)
+     */
+    public interface PanelObserver {
+        /**
+         * 滑动偏移量采样(与{@link PanelSlideListener#onPanelSlide(View, float)}一一对应，缓冲区已满时可能被丢弃)
+         *
+         * @param slideOffset    滑动面板在其范围内的偏移量
+         * @param timestampNanos 事件发生的时间({@link SystemClock#elapsedRealtimeNanos()})
+         */
+        void onPanelSlideSample(float slideOffset, long timestampNanos);
+
+        /**
+         * 滑动面板状态改变(缓冲区已满时可能被丢弃)
+         *
+         * @param previousState  之前的状态
+         * @param newState       当前状态
+         * @param timestampNanos 事件发生的时间({@link SystemClock#elapsedRealtimeNanos()})
+         */
+        void onPanelStateTransition(PanelState previousState, PanelState newState, long timestampNanos);
+    }
+
+    /**
+     * {@link PanelObserver}的缓冲区已满时的丢弃策略
+     */
+    public enum DropPolicy {
+        /**
+         * 丢弃新的事件，保留缓冲区中尚未处理的事件
+         */
+        DROP_NEWEST,
+        /**
+         * 丢弃缓冲区中最旧的事件，保留最新的事件(默认策略)
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * 停靠点事件监听器
+     */
+    public interface PanelSnapListener {
+        /**
+         * 当滑动面板停止在某个停靠点时调用
+         *
+         * @param panel       被移动的子视图(滑动面板)
+         * @param snapPointId 停靠点标识(自定义标识或{@link #SNAP_POINT_COLLAPSED}、{@link #SNAP_POINT_ANCHORED}、{@link #SNAP_POINT_EXPANDED})
+         * @param slideOffset 滑动面板在其范围内的偏移量(有效值范围[0,1])
+         */
+        void onPanelSnapped(View panel, int snapPointId, float slideOffset);
+    }
+
+    /**
+     * 硬件层提升回调
+     */
+    public interface LayerPromotionCallback {
+        /**
+         * 滑动开始、即将把子视图提升为硬件层时调用(包含视频等实时内容的视图应该返回false)
+         *
+         * @param view 即将被提升的子视图(滑动面板或主视图)
+         * @return 是否允许提升为硬件层
+         */
+        boolean canPromoteToLayer(View view);
+    }
+
     /**
      * Panel滑动事件监听器的空实现(如果只需要监听一个方法可以使用这个监听器)
      */
@@ -310,6 +670,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
 //        }
 
         Interpolator scrollerInterpolator = null;
+        int settleEngine = SETTLE_ENGINE_SCROLLER;
+        boolean touchPrediction = DEFAULT_TOUCH_PREDICTION_FLAG;
         if (attrs != null) {
             // 解析系统属性
             TypedArray defAttrs = context.obtainStyledAttributes(attrs, DEFAULT_ATTRS);
@@ -331,14 +693,22 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
                 mDragViewResId = typedArray.getResourceId(R.styleable.SlidingUpPanelLayout_umanoDragView, DEFAULT_UNDEFINED);
                 mScrollableViewResId = typedArray.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollableView, DEFAULT_UNDEFINED);
+                mAutoScrollableView = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoAutoScrollableView, DEFAULT_AUTO_SCROLLABLE_VIEW_FLAG);
+                mFlingHandoffEnabled = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoFlingHandoff, DEFAULT_FLING_HANDOFF_FLAG);
+                touchPrediction = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoTouchPrediction, DEFAULT_TOUCH_PREDICTION_FLAG);
+                mSlideCoalescingEnabled = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoSlideCoalescing, DEFAULT_SLIDE_COALESCING_FLAG);
 
                 mOverlayContent = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoOverlay, DEFAULT_OVERLAY_FLAG);
                 mClipPanel = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoClipPanel, DEFAULT_CLIP_PANEL_FLAG);
+                mResizeMode = ResizeMode.values()[typedArray.getInt(R.styleable.SlidingUpPanelLayout_umanoResizeMode, DEFAULT_RESIZE_MODE.ordinal())];
 
                 mAnchorPoint = typedArray.getFloat(R.styleable.SlidingUpPanelLayout_umanoAnchorPoint, DEFAULT_ANCHOR_POINT);
 
                 mSlideState = PanelState.values()[typedArray.getInt(R.styleable.SlidingUpPanelLayout_umanoInitialState, DEFAULT_SLIDE_STATE.ordinal())];
 
+                settleEngine = typedArray.getInt(R.styleable.SlidingUpPanelLayout_umanoSettleEngine, SETTLE_ENGINE_SCROLLER);
+                mLayerPromotionEnabled = typedArray.getBoolean(R.styleable.SlidingUpPanelLayout_umanoLayerPromotion, DEFAULT_LAYER_PROMOTION_FLAG);
+
                 int interpolatorResId = typedArray.getResourceId(R.styleable.SlidingUpPanelLayout_umanoScrollInterpolator, DEFAULT_UNDEFINED);
                 if (interpolatorResId != DEFAULT_UNDEFINED) {
                     scrollerInterpolator = AnimationUtils.loadInterpolator(context, interpolatorResId);
@@ -357,6 +727,9 @@ public class SlidingUpPanelLayout extends ViewGroup {
         if (mParallaxOffset == DEFAULT_UNDEFINED) {
             mParallaxOffset = (int) (DEFAULT_PARALLAX_OFFSET * density);
         }
+        // 重力加速度(m/s²) * 每米英寸数 * 每英寸像素数 * 0.84 * 滚动摩擦系数
+        mFlingDeceleration = SensorManager.GRAVITY_EARTH * 39.37f * (density * 160.0f) * 0.84f
+                * ViewConfiguration.getScrollFriction();
         // 如果阴影的高度为0则不绘制阴影
         if (mShadowHeight > 0) {
             if (mIsSlidingUp) {
@@ -371,10 +744,23 @@ public class SlidingUpPanelLayout extends ViewGroup {
         setWillNotDraw(false);
 
         // 用来处理滑动的工具类
+        mSettleInterpolator = scrollerInterpolator != null ? scrollerInterpolator : ViewDragHelper.sInterpolator;
         mDragHelper = ViewDragHelper.create(this, 0.5f, scrollerInterpolator, new DragHelperCallback());
         mDragHelper.setMinVelocity(mMinFlingVelocity * density);
+        mDragHelper.setTouchPredictionEnabled(touchPrediction);
+        if (settleEngine == SETTLE_ENGINE_SPRING) {
+            mDragHelper.setSettleEngine(new SpringSettleEngine());
+        } else if (settleEngine == SETTLE_ENGINE_DECAY) {
+            mDragHelper.setSettleEngine(new DecaySettleEngine());
+        }
 
         mIsTouchEnabled = true;
+
+        mSnapPoints.put(SNAP_POINT_COLLAPSED, 0.0f);
+        mSnapPoints.put(SNAP_POINT_EXPANDED, 1.0f);
+        if (mAnchorPoint < 1.0f) {
+            mSnapPoints.put(SNAP_POINT_ANCHORED, mAnchorPoint);
+        }
     }
 
     /**
@@ -528,9 +914,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * @param listener 滑动面板滑动事件监听
      */
     public void addPanelSlideListener(PanelSlideListener listener) {
-        synchronized (mPanelSlideListeners) {
-            mPanelSlideListeners.add(listener);
-        }
+        mPanelSlideListeners.add(listener);
     }
 
     /**
@@ -539,8 +923,45 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * @param listener 滑动面板滑动事件监听
      */
     public void removePanelSlideListener(PanelSlideListener listener) {
-        synchronized (mPanelSlideListeners) {
-            mPanelSlideListeners.remove(listener);
+        mPanelSlideListeners.remove(listener);
+    }
+
+    /**
+     * 添加滑动面板事件的后台观察者(缓冲区容量为64，已满时丢弃最旧的事件)
+     *
+     * @see #addPanelObserver(PanelObserver, Executor, int, DropPolicy)
+     */
+    public void addPanelObserver(PanelObserver observer, Executor executor) {
+        addPanelObserver(observer, executor, DEFAULT_OBSERVER_CAPACITY, DropPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * 添加滑动面板事件的后台观察者
+     * <p>主线程只把事件写入该观察者独占的环形缓冲区，不加锁也不分配内存；
+     * 观察者在executor上按事件发生的顺序回调，处理不及时时按dropPolicy丢弃事件</p>
+     *
+     * @param observer   观察者
+     * @param executor   回调观察者的执行器
+     * @param capacity   事件缓冲区的容量
+     * @param dropPolicy 缓冲区已满时的丢弃策略
+     */
+    public void addPanelObserver(PanelObserver observer, Executor executor, int capacity, DropPolicy dropPolicy) {
+        mPanelEventChannels.add(new PanelEventChannel(observer, executor, capacity, dropPolicy));
+    }
+
+    /**
+     * 移除滑动面板事件的后台观察者(尚未回调的事件不再回调)
+     *
+     * @param observer 观察者
+     */
+    public void removePanelObserver(PanelObserver observer) {
+        final PanelEventChannel[] channels = mPanelEventChannels.get();
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i].getObserver() == observer) {
+                channels[i].close();
+                mPanelEventChannels.remove(channels[i]);
+                return;
+            }
         }
     }
 
@@ -601,110 +1022,671 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * @param scrollableView 可滚动的View
      */
     public void setScrollableView(View scrollableView) {
+        if (mViewportAware && mScrollableView != scrollableView) {
+            // 恢复旧滚动视图的高度，并按可见区域重新测量新的滚动视图
+            if (mScrollableView != null) {
+                mScrollableView.requestLayout();
+            }
+            if (scrollableView != null) {
+                scrollableView.requestLayout();
+            }
+        }
         mScrollableView = scrollableView;
+        setTouchScrollableView(scrollableView);
     }
 
     /**
-     * 设置确定当前滚动视图的滚动位置的辅助类
+     * 设置当前手势使用的滚动视图
      *
-     * @param helper 辅助类对象
-     * @see ScrollableViewHelper
+     * @param scrollableView 滚动视图
      */
-    public void setScrollableViewHelper(ScrollableViewHelper helper) {
-        mScrollableViewHelper = helper;
+    private void setTouchScrollableView(View scrollableView) {
+        if (mTouchScrollableView == scrollableView && mScrollableViewStrategy != null) {
+            return;
+        }
+        mTouchScrollableView = scrollableView;
+        mScrollableViewStrategy = scrollableView != null ? mScrollableViewHelper.resolveStrategy(scrollableView) : null;
+        mScrollableViewTracker.setScrollableView(scrollableView);
     }
 
     /**
-     * 设置在滑动时面板可以停止的锚点(有效值范围[0,1])
+     * 设置是否在每次按下时自动查找按下位置的滚动视图
+     * <p>开启后每个手势开始时在滑动面板中查找按下位置最内层的垂直滚动视图(例如ViewPager当前页面中的列表)，
+     * 找不到时使用{@link #setScrollableView(View)}设置的滚动视图。
+     * 滚动视图的索引在布局改变后重新建立，按下时只对索引中的视图做命中测试</p>
      *
-     * @param anchorPoint 在滑动时面板可以停止的锚点(有效值范围[0,1]，确定锚点从布局顶部开始的位置)
+     * @param autoScrollableView 是否自动查找按下位置的滚动视图(默认为false)
      */
-    public void setAnchorPoint(float anchorPoint) {
-        if (anchorPoint > 0 && anchorPoint <= 1) {
-            mAnchorPoint = anchorPoint;
-            mFirstLayout = true;
-            requestLayout();
+    public void setAutoScrollableView(boolean autoScrollableView) {
+        mAutoScrollableView = autoScrollableView;
+        mScrollableViewCandidatesDirty = true;
+        if (!autoScrollableView) {
+            mScrollableViewCandidates.clear();
+            setTouchScrollableView(mScrollableView);
         }
     }
 
     /**
-     * 返回在滑动时面板可以停止的锚点(有效值范围[0,1])
+     * 返回是否在每次按下时自动查找按下位置的滚动视图
      */
-    public float getAnchorPoint() {
-        return mAnchorPoint;
+    public boolean isAutoScrollableView() {
+        return mAutoScrollableView;
     }
 
     /**
-     * 设置面板是否覆盖内容
+     * 设置是否将展开后剩余的惯性速度传递给滚动视图
+     * <p>开启后向展开方向快速滑动到展开位置时，面板按惯性滑动的减速度估算停靠后剩余的速度，
+     * 停靠完成后让滚动视图以该速度继续惯性滚动，一次手势既展开面板又滚动内容</p>
      *
-     * @param overlayed 面板是否覆盖内容(默认为false)
+     * @param flingHandoffEnabled 是否传递剩余速度(默认为false)
      */
-    public void setOverlayed(boolean overlayed) {
-        mOverlayContent = overlayed;
+    public void setFlingHandoffEnabled(boolean flingHandoffEnabled) {
+        mFlingHandoffEnabled = flingHandoffEnabled;
+        if (!flingHandoffEnabled) {
+            mPendingHandoffVelocity = 0;
+        }
     }
 
     /**
-     * 返回面板是否覆盖内容(默认为false)
+     * 返回是否将展开后剩余的惯性速度传递给滚动视图
      */
-    public boolean isOverlayed() {
-        return mOverlayContent;
+    public boolean isFlingHandoffEnabled() {
+        return mFlingHandoffEnabled;
     }
 
     /**
-     * 设置主视图是否被裁剪到滑动面板的顶部
+     * 设置是否预测拖动时触摸点的位置
+     * <p>开启后拖动面板时根据最近采样的速度和加速度，把面板移动到触摸点在下一帧显示时的预测位置，
+     * 减少面板落后于手指的距离；预测位置同样受滑动范围限制，并在下一个真实采样到来时被修正</p>
      *
-     * @param clip 主视图是否被裁剪到滑动面板的顶部
+     * @param touchPredictionEnabled 是否预测触摸点的位置(默认为false)
      */
-    public void setClipPanel(boolean clip) {
-        mClipPanel = clip;
+    public void setTouchPredictionEnabled(boolean touchPredictionEnabled) {
+        mDragHelper.setTouchPredictionEnabled(touchPredictionEnabled);
     }
 
     /**
-     * 返回主视图是否被裁剪到滑动面板的顶部
+     * 返回是否预测拖动时触摸点的位置
      */
-    public boolean isClipPanel() {
-        return mClipPanel;
+    public boolean isTouchPredictionEnabled() {
+        return mDragHelper.isTouchPredictionEnabled();
     }
 
-    protected void smoothToBottom() {
-        smoothSlideTo(0, 0);
+    /**
+     * 设置是否每帧最多分发一次滑动事件
+     * <p>开启后{@link PanelSlideListener#onPanelSlide(View, float)}在下一帧的垂直同步信号到来时分发一次，
+     * 携带该帧之前最新的滑动偏移量；状态改变事件分发前会先分发尚未分发的滑动事件，保证事件顺序不变</p>
+     *
+     * @param slideCoalescingEnabled 是否每帧最多分发一次滑动事件(默认为false)
+     */
+    public void setSlideCoalescingEnabled(boolean slideCoalescingEnabled) {
+        mSlideCoalescingEnabled = slideCoalescingEnabled;
+        if (!slideCoalescingEnabled) {
+            flushPendingPanelSlide();
+        }
     }
 
     /**
-     * 分发滑动面板的位置改变事件
+     * 返回是否每帧最多分发一次滑动事件
+     */
+    public boolean isSlideCoalescingEnabled() {
+        return mSlideCoalescingEnabled;
+    }
+
+    /**
+     * 设置分发滑动事件的阈值
+     * <p>滑动偏移量的变化量小于offsetEpsilon，或者面板的移动距离小于pixelThreshold时不分发滑动事件；
+     * 到达停靠点或滑动范围的边界时总是分发，监听最终总能收到准确的滑动偏移量</p>
      *
-     * @param panel 滑动面板
+     * @param offsetEpsilon  滑动偏移量变化量的阈值(默认为0)
+     * @param pixelThreshold 移动距离的阈值(单位：px，默认为0)
      */
-    void dispatchOnPanelSlide(View panel) {
-        synchronized (mPanelSlideListeners) {
-            for (PanelSlideListener listener : mPanelSlideListeners) {
-                listener.onPanelSlide(panel, mSlideOffset);
-            }
+    public void setSlideDispatchThreshold(float offsetEpsilon, int pixelThreshold) {
+        if (offsetEpsilon < 0 || pixelThreshold < 0) {
+            throw new IllegalArgumentException("Slide dispatch threshold must not be negative.");
         }
+        mSlideOffsetEpsilon = offsetEpsilon;
+        mSlidePixelThreshold = pixelThreshold;
     }
 
     /**
-     * 分发滑动面板的状态改变事件
+     * 添加滑动偏移量与视图属性的绑定(线性变化)
      *
-     * @param panel         滑动面板
-     * @param previousState 之前的状态
-     * @param cunrentState  当前状态
+     * @see #addOffsetBinding(View, int, float, float, float, float, Interpolator)
      */
-    void dispatchOnPanelStateChanged(View panel, PanelState previousState, PanelState cunrentState) {
-        synchronized (mPanelSlideListeners) {
-            for (PanelSlideListener listener : mPanelSlideListeners) {
-                listener.onPanelStateChanged(panel, previousState, cunrentState);
-            }
-        }
-        sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+    public OffsetBinding addOffsetBinding(View target, int property, float fromOffset, float toOffset,
+                                          float startValue, float endValue) {
+        return addOffsetBinding(target, property, fromOffset, toOffset, startValue, endValue, null);
     }
 
     /**
-     * 根据当前的view的位置判断是显示还是隐藏
+     * 添加滑动偏移量与视图属性的绑定
+     * <p>滑动偏移量在[fromOffset, toOffset]范围内变化时，目标视图的属性按插值器从startValue变化到endValue，
+     * 所有绑定在更新视差之后的同一次遍历中计算，不需要为每个效果单独添加{@link PanelSlideListener}</p>
+     *
+     * @param target       目标视图
+     * @param property     绑定的属性({@link OffsetBinding#PROPERTY_ALPHA}等，背景颜色使用{@link #addColorBinding(View, float, float, int, int, Interpolator)})
+     * @param fromOffset   开始变化的滑动偏移量
+     * @param toOffset     结束变化的滑动偏移量
+     * @param startValue   属性的起始值
+     * @param endValue     属性的结束值
+     * @param interpolator 插值器(为null时线性变化)
+     * @return 添加的绑定(用于{@link #removeOffsetBinding(OffsetBinding)})
      */
-    void updateObscuredViewVisibility() {
-        if (getChildCount() == 0) {
-            return;
+    public OffsetBinding addOffsetBinding(View target, int property, float fromOffset, float toOffset,
+                                          float startValue, float endValue, Interpolator interpolator) {
+        if (property == OffsetBinding.PROPERTY_BACKGROUND_COLOR) {
+            throw new IllegalArgumentException("Use addColorBinding() to bind the background color.");
+        }
+        return addOffsetBinding(new OffsetBinding(target, property, fromOffset, toOffset,
+                startValue, endValue, 0, 0, interpolator));
+    }
+
+    /**
+     * 添加滑动偏移量与视图背景颜色的绑定
+     *
+     * @param target       目标视图
+     * @param fromOffset   开始变化的滑动偏移量
+     * @param toOffset     结束变化的滑动偏移量
+     * @param startColor   起始颜色
+     * @param endColor     结束颜色
+     * @param interpolator 插值器(为null时线性变化)
+     * @return 添加的绑定(用于{@link #removeOffsetBinding(OffsetBinding)})
+     */
+    public OffsetBinding addColorBinding(View target, float fromOffset, float toOffset,
+                                         int startColor, int endColor, Interpolator interpolator) {
+        return addOffsetBinding(new OffsetBinding(target, OffsetBinding.PROPERTY_BACKGROUND_COLOR,
+                fromOffset, toOffset, 0, 0, startColor, endColor, interpolator));
+    }
+
+    private OffsetBinding addOffsetBinding(OffsetBinding binding) {
+        mOffsetBindings.add(binding);
+        // 立即按当前的滑动偏移量设置属性
+        binding.apply(mSlideOffset);
+        return binding;
+    }
+
+    /**
+     * 移除滑动偏移量与视图属性的绑定(目标视图的属性保持当前值)
+     *
+     * @param binding 要移除的绑定
+     */
+    public void removeOffsetBinding(OffsetBinding binding) {
+        mOffsetBindings.remove(binding);
+    }
+
+    /**
+     * 移除所有滑动偏移量与视图属性的绑定(目标视图的属性保持当前值)
+     */
+    public void clearOffsetBindings() {
+        mOffsetBindings.clear();
+    }
+
+    /**
+     * 按当前的滑动偏移量计算所有绑定
+     */
+    private void applyOffsetBindings() {
+        final List<OffsetBinding> bindings = mOffsetBindings;
+        for (int i = 0, size = bindings.size(); i < size; i++) {
+            bindings.get(i).apply(mSlideOffset);
+        }
+    }
+
+    /**
+     * 返回滑动面板中位于指定位置的最内层滚动视图
+     *
+     * @param x X轴坐标
+     * @param y Y轴坐标
+     * @return 滚动视图，没有则返回null
+     */
+    private View findScrollableViewUnder(int x, int y) {
+        if (mScrollableViewCandidatesDirty) {
+            mScrollableViewCandidates.clear();
+            if (mSlideableView != null) {
+                collectScrollableViews(mSlideableView);
+            }
+            mScrollableViewCandidatesDirty = false;
+        }
+        // 深度优先的顺序中子孙视图排在祖先视图之后，从后向前查找得到最内层的滚动视图
+        for (int i = mScrollableViewCandidates.size() - 1; i >= 0; i--) {
+            final View candidate = mScrollableViewCandidates.get(i);
+            if (isDescendantUnder(candidate, x, y)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void collectScrollableViews(View view) {
+        if (view.getVisibility() != VISIBLE) {
+            return;
+        }
+        if (mScrollableViewHelper.isScrollableView(view)) {
+            mScrollableViewCandidates.add(view);
+        }
+        if (view instanceof ViewGroup) {
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0, childCount = group.getChildCount(); i < childCount; i++) {
+                collectScrollableViews(group.getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * 判断指定位置是否落在子孙视图上(实时计算，不使用命中测试缓存)
+     */
+    private boolean isDescendantUnder(View view, int x, int y) {
+        int left = 0;
+        int top = 0;
+        View current = view;
+        while (current != this) {
+            final ViewParent parent = current.getParent();
+            if (!(parent instanceof View) || current.getVisibility() != VISIBLE) {
+                return false;
+            }
+            left += current.getLeft() + (int) ViewCompat.getTranslationX(current);
+            top += current.getTop() + (int) ViewCompat.getTranslationY(current);
+            current = (View) parent;
+            if (current != this) {
+                left -= current.getScrollX();
+                top -= current.getScrollY();
+            }
+        }
+        return x >= left && x < left + view.getWidth() &&
+                y >= top && y < top + view.getHeight();
+    }
+
+    /**
+     * 设置确定当前滚动视图的滚动位置的辅助类
+     *
+     * @param helper 辅助类对象
+     * @see ScrollableViewHelper
+     */
+    public void setScrollableViewHelper(ScrollableViewHelper helper) {
+        mScrollableViewHelper = helper;
+        mScrollableViewStrategy = mTouchScrollableView != null ? helper.resolveStrategy(mTouchScrollableView) : null;
+        mScrollableViewTracker.invalidate();
+        mScrollableViewCandidatesDirty = true;
+    }
+
+    /**
+     * 设置在滑动时面板可以停止的锚点(有效值范围[0,1])
+     *
+     * @param anchorPoint 在滑动时面板可以停止的锚点(有效值范围[0,1]，确定锚点从布局顶部开始的位置)
+     */
+    public void setAnchorPoint(float anchorPoint) {
+        if (anchorPoint > 0 && anchorPoint <= 1) {
+            mAnchorPoint = anchorPoint;
+            if (anchorPoint < 1) {
+                mSnapPoints.put(SNAP_POINT_ANCHORED, anchorPoint);
+            } else {
+                mSnapPoints.remove(SNAP_POINT_ANCHORED);
+            }
+            mFirstLayout = true;
+            requestLayout();
+        }
+    }
+
+    /**
+     * 返回在滑动时面板可以停止的锚点(有效值范围[0,1])
+     */
+    public float getAnchorPoint() {
+        return mAnchorPoint;
+    }
+
+    /**
+     * 添加自定义停靠点(如果标识已存在则替换其位置)
+     *
+     * @param id          停靠点标识(必须大于等于0)
+     * @param slideOffset 停靠点的滑动偏移量(有效值范围(0,1))
+     */
+    public void addSnapPoint(int id, float slideOffset) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Snap point id must be greater than or equal to 0.");
+        }
+        if (slideOffset <= 0 || slideOffset >= 1) {
+            throw new IllegalArgumentException("Snap point offset must be between 0 and 1 (exclusive).");
+        }
+        mSnapPoints.put(id, slideOffset);
+        requestLayout();
+    }
+
+    /**
+     * 移除自定义停靠点
+     *
+     * @param id 停靠点标识
+     */
+    public void removeSnapPoint(int id) {
+        if (id >= 0 && mSnapPoints.remove(id)) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * 移除所有自定义停靠点
+     */
+    public void clearSnapPoints() {
+        boolean removed = false;
+        for (int i = mSnapPoints.size() - 1; i >= 0; i--) {
+            final int id = mSnapPoints.getId(i);
+            if (id >= 0) {
+                removed |= mSnapPoints.remove(id);
+            }
+        }
+        if (removed) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * 平滑移动滑动面板到指定停靠点
+     *
+     * @param id 停靠点标识
+     * @return 是否开始移动
+     */
+    public boolean slideToSnapPoint(int id) {
+        final int index = mSnapPoints.indexOfId(id);
+        if (index < 0 || mFirstLayout || mSlideState == PanelState.DRAGGING) {
+            return false;
+        }
+        return smoothSlideTo(mSnapPoints.getOffset(index), 0);
+    }
+
+    /**
+     * 设置停靠点事件监听
+     *
+     * @param listener 停靠点事件监听
+     */
+    public void setPanelSnapListener(PanelSnapListener listener) {
+        mPanelSnapListener = listener;
+    }
+
+    /**
+     * 设置面板是否覆盖内容
+     *
+     * @param overlayed 面板是否覆盖内容(默认为false)
+     */
+    public void setOverlayed(boolean overlayed) {
+        mOverlayContent = overlayed;
+    }
+
+    /**
+     * 返回面板是否覆盖内容(默认为false)
+     */
+    public boolean isOverlayed() {
+        return mOverlayContent;
+    }
+
+    /**
+     * 设置主视图是否被裁剪到滑动面板的顶部
+     *
+     * @param clip 主视图是否被裁剪到滑动面板的顶部
+     */
+    public void setClipPanel(boolean clip) {
+        mClipPanel = clip;
+    }
+
+    /**
+     * 返回主视图是否被裁剪到滑动面板的顶部
+     */
+    public boolean isClipPanel() {
+        return mClipPanel;
+    }
+
+    /**
+     * 设置面板不覆盖内容时主视图的尺寸调整策略
+     *
+     * @param mode 主视图的尺寸调整策略(默认为{@link ResizeMode#RELAYOUT})
+     */
+    public void setResizeMode(ResizeMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Resize mode cannot be null.");
+        }
+        if (mResizeMode == mode) {
+            return;
+        }
+        mResizeMode = mode;
+        if (mode == ResizeMode.RELAYOUT) {
+            // 提交CLIP策略下尚未提交的布局
+            commitMainViewLayout();
+        }
+    }
+
+    /**
+     * 返回面板不覆盖内容时主视图的尺寸调整策略
+     */
+    public ResizeMode getResizeMode() {
+        return mResizeMode;
+    }
+
+    /**
+     * 设置是否按面板的可见区域测量滚动视图(仅对从底部滑出的面板生效)
+     * <p>开启后滚动视图的高度被限制为面板已经显示过的区域，随着面板展开逐步增大，
+     * 这样面板显示后滚动视图只会绑定真正露出的列表项。
+     * 滚动视图必须是滑动面板的直接子视图，限制从第一次布局完成后开始生效</p>
+     *
+     * @param viewportAware 是否按面板的可见区域测量滚动视图(默认为false)
+     */
+    public void setViewportAware(boolean viewportAware) {
+        if (mViewportAware == viewportAware) {
+            return;
+        }
+        mViewportAware = viewportAware;
+        mRevealedExtent = 0;
+        if (mScrollableView != null) {
+            mScrollableView.requestLayout();
+        }
+    }
+
+    /**
+     * 返回是否按面板的可见区域测量滚动视图
+     */
+    public boolean isViewportAware() {
+        return mViewportAware;
+    }
+
+    /**
+     * 设置滑动面板停靠时使用的动画引擎
+     *
+     * @param engine 动画引擎(为null时使用默认引擎)
+     * @see SpringSettleEngine
+     * @see DecaySettleEngine
+     */
+    public void setSettleEngine(ViewDragHelper.SettleEngine engine) {
+        mDragHelper.setSettleEngine(engine);
+    }
+
+    /**
+     * 返回滑动面板停靠时使用的动画引擎
+     */
+    public ViewDragHelper.SettleEngine getSettleEngine() {
+        return mDragHelper.getSettleEngine();
+    }
+
+    /**
+     * 设置是否使用属性动画完成停靠
+     * <p>开启后{@link #setPanelState(PanelState)}和手指释放后的停靠由{@link ValueAnimator}驱动，
+     * 时长和插值器与默认的停靠动画相同，动画的每一帧都和拖动一样移动面板，阴影、蒙层、视差和滑动回调照常逐帧更新。
+     * 动画仍然在主线程执行，不会减少每一帧的工作量，适用于需要遵循系统动画时长缩放或与其它属性动画统一管理的场景。
+     * 开启后不使用{@link #setSettleEngine(ViewDragHelper.SettleEngine)}设置的动画引擎，按下屏幕或从窗口移除时停在当前位置</p>
+     *
+     * @param enabled 是否使用属性动画完成停靠(默认为false)
+     */
+    public void setSettleAnimatorEnabled(boolean enabled) {
+        mSettleAnimatorEnabled = enabled;
+        if (!enabled) {
+            stopSettleAnimator();
+        }
+    }
+
+    /**
+     * 返回是否使用属性动画完成停靠
+     */
+    public boolean isSettleAnimatorEnabled() {
+        return mSettleAnimatorEnabled;
+    }
+
+    /**
+     * 设置是否在滑动过程中将子视图提升为硬件层
+     * <p>开启后滑动面板(以及存在视差偏移或蒙层时的主视图)在拖动和停靠期间使用硬件层绘制，
+     * 每一帧只需要合成图层而不必重新绘制整个视图树，停止滑动后恢复。
+     * 面积过小的面板以及内容频繁刷新的视图不会被提升，已经设置了图层类型的视图也不会被修改</p>
+     *
+     * @param enabled 是否在滑动过程中将子视图提升为硬件层(默认为false)
+     */
+    public void setLayerPromotionEnabled(boolean enabled) {
+        mLayerPromotionEnabled = enabled;
+        if (!enabled) {
+            demoteLayers();
+        }
+    }
+
+    /**
+     * 返回是否在滑动过程中将子视图提升为硬件层
+     */
+    public boolean isLayerPromotionEnabled() {
+        return mLayerPromotionEnabled;
+    }
+
+    /**
+     * 设置硬件层提升回调
+     *
+     * @param callback 硬件层提升回调
+     */
+    public void setLayerPromotionCallback(LayerPromotionCallback callback) {
+        mLayerPromotionCallback = callback;
+    }
+
+    protected void smoothToBottom() {
+        smoothSlideTo(0, 0);
+    }
+
+    /**
+     * 分发滑动面板的位置改变事件
+     *
+     * @param panel 滑动面板
+     */
+    void dispatchOnPanelSlide(View panel) {
+        dispatchOnPanelSlide(mPanelSlideListeners, panel, mSlideOffset);
+        final PanelEventChannel[] channels = mPanelEventChannels.get();
+        if (channels.length > 0) {
+            final long timestamp = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < channels.length; i++) {
+                channels[i].postSlide(mSlideOffset, timestamp);
+            }
+        }
+    }
+
+    /**
+     * 依次回调滑动监听
+     * <p>只读取一次快照并按下标遍历，回调中添加或移除监听不影响本次分发</p>
+     *
+     * @param listeners   滑动监听
+     * @param panel       滑动面板
+     * @param slideOffset 滑动偏移量
+     */
+    static void dispatchOnPanelSlide(SnapshotArray<PanelSlideListener> listeners, View panel, float slideOffset) {
+        final PanelSlideListener[] snapshot = listeners.get();
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i].onPanelSlide(panel, slideOffset);
+        }
+    }
+
+    /**
+     * 滑动偏移量改变后分发滑动事件(开启合并时推迟到下一帧分发)
+     */
+    private void requestPanelSlideDispatch() {
+        if (!mSlideCoalescingEnabled) {
+            dispatchOnPanelSlideIfChanged();
+        } else if (!mSlideDispatchScheduled) {
+            mSlideDispatchScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mSlideDispatchFrameCallback);
+        }
+    }
+
+    /**
+     * 立即分发尚未分发的滑动事件
+     */
+    private void flushPendingPanelSlide() {
+        if (mSlideDispatchScheduled) {
+            mSlideDispatchScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mSlideDispatchFrameCallback);
+            dispatchOnPanelSlideIfChanged();
+        }
+    }
+
+    /**
+     * 滑动偏移量相对上一次分发的变化量达到阈值时分发滑动事件
+     * <p>没有开启合并也没有设置阈值时每次都分发，与之前的行为一致</p>
+     */
+    private void dispatchOnPanelSlideIfChanged() {
+        if (mSlideableView == null) {
+            return;
+        }
+        final float offset = mSlideOffset;
+        final float last = mDispatchedSlideOffset;
+        if (!mSlideCoalescingEnabled && mSlideOffsetEpsilon <= 0 && mSlidePixelThreshold <= 0) {
+            mDispatchedSlideOffset = offset;
+            dispatchOnPanelSlide(mSlideableView);
+            return;
+        }
+        if (offset == last) {
+            return;
+        }
+        if (!Float.isNaN(last) && offset > 0 && offset < 1
+                && mSnapPoints.indexOfPosition(computeSlidePosition(mSlideableView.getTop())) < 0) {
+            final float delta = Math.abs(offset - last);
+            if (delta < mSlideOffsetEpsilon || delta * mSlideRange < mSlidePixelThreshold) {
+                return;
+            }
+        }
+        mDispatchedSlideOffset = offset;
+        dispatchOnPanelSlide(mSlideableView);
+    }
+
+    /**
+     * 分发滑动面板的状态改变事件
+     *
+     * @param panel         滑动面板
+     * @param previousState 之前的状态
+     * @param cunrentState  当前状态
+     */
+    void dispatchOnPanelStateChanged(View panel, PanelState previousState, PanelState cunrentState) {
+        final PanelSlideListener[] listeners = mPanelSlideListeners.get();
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPanelStateChanged(panel, previousState, cunrentState);
+        }
+        final PanelEventChannel[] channels = mPanelEventChannels.get();
+        if (channels.length > 0) {
+            final long timestamp = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < channels.length; i++) {
+                channels[i].postStateChanged(previousState, cunrentState, timestamp);
+            }
+        }
+        sendAccessibilityEvent(AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED);
+    }
+
+    /**
+     * 如果滑动面板停在某个停靠点上，分发停靠点事件
+     *
+     * @param panel 滑动面板
+     */
+    void dispatchOnPanelSnapped(View panel) {
+        if (mPanelSnapListener == null) {
+            return;
+        }
+        final int index = mSnapPoints.indexOfPosition(computeSlidePosition(panel.getTop()));
+        if (index >= 0) {
+            mPanelSnapListener.onPanelSnapped(panel, mSnapPoints.getId(index), mSlideOffset);
+        }
+    }
+
+    /**
+     * 根据当前的view的位置判断是显示还是隐藏
+     */
+    void updateObscuredViewVisibility() {
+        if (getChildCount() == 0) {
+            return;
         }
         final int leftBound = getPaddingLeft();
         final int rightBound = getWidth() - getPaddingRight();
@@ -759,16 +1741,38 @@ public class SlidingUpPanelLayout extends ViewGroup {
         return bg != null && bg.getOpacity() == PixelFormat.OPAQUE;
     }
 
+    /**
+     * 判断滑动面板当前是否完全不透明地绘制(可以遮挡其下方的主视图)
+     * <p>背景的透明度每次重新读取：背景颜色可能在背景对象不变的情况下改变(例如颜色绑定)</p>
+     */
+    boolean isPanelDrawnOpaque() {
+        return mSlideableView.getVisibility() == VISIBLE
+                && ViewCompat.getAlpha(mSlideableView) >= 1f
+                && ViewCompat.getScaleX(mSlideableView) == 1f
+                && ViewCompat.getScaleY(mSlideableView) == 1f
+                && hasOpaqueBackground(mSlideableView);
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         mFirstLayout = true;
+        invalidateViewOffsetCache();
+        if (mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+            scheduleSettleFrame();
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        removeCallbacks(mViewportMeasureRunnable);
+        stopSettleAnimator();
+        demoteLayers();
         mFirstLayout = true;
+        invalidateViewOffsetCache();
+        cancelSettleFrame();
+        flushPendingPanelSlide();
     }
 
     @Override
@@ -804,6 +1808,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
         int layoutHeight = heightSize - getPaddingTop() - getPaddingBottom();
         int layoutWidth = widthSize - getPaddingLeft() - getPaddingRight();
 
+        boolean panelMeasured = false;
         // First pass. Measure based on child LayoutParams width/height.
         for (int i = 0; i < childCount; i++) {
             final View child = getChildAt(i);
@@ -850,15 +1855,77 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 }
                 childHeightSpec = MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY);
             }
-            //子视图measure调用
-            child.measure(childWidthSpec, childHeightSpec);
+            // 测量规格未变化且子视图没有请求重新布局时，直接沿用上一次的测量结果
+            final boolean measured;
+            if (mMeasuredChildren[i] != child
+                    || mChildWidthMeasureSpecs[i] != childWidthSpec
+                    || mChildHeightMeasureSpecs[i] != childHeightSpec
+                    || child.isLayoutRequested()) {
+                //子视图measure调用
+                child.measure(childWidthSpec, childHeightSpec);
+                mMeasuredChildren[i] = child;
+                mChildWidthMeasureSpecs[i] = childWidthSpec;
+                mChildHeightMeasureSpecs[i] = childHeightSpec;
+                mChildMeasuredSinceLayout[i] = true;
+                measured = true;
+            } else {
+                measured = false;
+            }
 
             if (child == mSlideableView) {
+                panelMeasured = measured;
+            }
+            if (child == mSlideableView && (measured || mSlideRangePanelHeight != mPanelHeight)) {
                 mSlideRange = mSlideableView.getMeasuredHeight() - mPanelHeight;
+                mSlideRangePanelHeight = mPanelHeight;
+                mSnapPoints.computePositions(mSlideRange);
             }
         }
 
         setMeasuredDimension(widthSize, heightSize);
+
+        if (mSnapPoints.isDirty()) {
+            mSnapPoints.computePositions(mSlideRange);
+        }
+        if (panelMeasured) {
+            measureScrollableViewToViewport();
+        }
+    }
+
+    /**
+     * 将滚动视图的高度限制在面板已经显示过的区域内(必须在面板测量完成后调用)
+     * <p>只处理滑动面板的直接子视图：更深层的滚动视图由其父视图测量和布局，在这里重新测量会与父视图的结果不一致。
+     * 滚动视图在面板中的位置取自上一次布局，所以第一次布局完成之前不做限制</p>
+     */
+    private void measureScrollableViewToViewport() {
+        mScrollableViewClipped = false;
+        if (!mViewportAware || !mIsSlidingUp || mFirstLayout || mScrollableView == null
+                || mScrollableView.getParent() != mSlideableView
+                || mScrollableView.getVisibility() == GONE) {
+            return;
+        }
+        int visibleExtent = computeVisiblePanelExtent(mSlideOffset);
+        if (visibleExtent > mRevealedExtent) {
+            // 每次多显示一个面板高度，避免拖动时频繁重新布局
+            mRevealedExtent = Math.min(visibleExtent + mPanelHeight, mSlideableView.getMeasuredHeight());
+        }
+        int limit = Math.max(0, mRevealedExtent - mScrollableView.getTop());
+        if (limit < mScrollableView.getMeasuredHeight()) {
+            mScrollableView.measure(
+                    MeasureSpec.makeMeasureSpec(mScrollableView.getMeasuredWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(limit, MeasureSpec.EXACTLY));
+            mScrollableViewClipped = true;
+        }
+    }
+
+    /**
+     * 计算滑动面板在指定滑动偏移量下的可见高度(单位：px)
+     *
+     * @param slideOffset 滑动偏移量
+     */
+    private int computeVisiblePanelExtent(float slideOffset) {
+        int visible = getMeasuredHeight() - getPaddingBottom() - computePanelTopPosition(slideOffset);
+        return Math.max(0, Math.min(visible, mSlideableView.getMeasuredHeight()));
     }
 
     @Override
@@ -870,23 +1937,10 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         // 根据当前mSlideState，初始化mSlideOffset值
         if (mFirstLayout) {
-            switch (mSlideState) {
-                case EXPANDED:
-                    mSlideOffset = 1.0f;
-                    break;
-                case ANCHORED:
-                    mSlideOffset = mAnchorPoint;
-                    break;
-                case HIDDEN:
-                    int newTop = computePanelTopPosition(0.0f) + (mIsSlidingUp ? +mPanelHeight : -mPanelHeight);
-                    mSlideOffset = computeSlideOffset(newTop);
-                    break;
-                default:
-                    mSlideOffset = 0.f;
-                    break;
-            }
+            mSlideOffset = computeSlideOffsetForState(mSlideState);
         }
 
+        boolean relaidOut = false;
         for (int i = 0; i < childCount; i++) {
             final View child = getChildAt(i);
             final LayoutParams lp = (LayoutParams) child.getLayoutParams();
@@ -911,14 +1965,46 @@ public class SlidingUpPanelLayout extends ViewGroup {
             final int childBottom = childTop + childHeight;
             final int childLeft = paddingLeft + lp.leftMargin;
             final int childRight = childLeft + child.getMeasuredWidth();
-            //完成子视图的layout
-            child.layout(childLeft, childTop, childRight, childBottom);
+            final boolean measured = mChildMeasuredSinceLayout[i];
+            mChildMeasuredSinceLayout[i] = false;
+            if (!mFirstLayout
+                    && !measured
+                    && !child.isLayoutRequested()
+                    && child.getLeft() == childLeft
+                    && child.getWidth() == child.getMeasuredWidth()
+                    && child.getHeight() == childHeight) {
+                // 上次布局之后没有重新测量且尺寸未变化，只需要移动子视图，不必重新布局其内部
+                if (child.getTop() != childTop) {
+                    child.offsetTopAndBottom(childTop - child.getTop());
+                }
+            } else {
+                //完成子视图的layout
+                child.layout(childLeft, childTop, childRight, childBottom);
+                relaidOut = true;
+            }
         }
 
         if (mFirstLayout) {
             updateObscuredViewVisibility();
         }
-        applyParallaxForCurrentSlideOffset();
+        if (relaidOut || mLayoutSlideOffset != mSlideOffset) {
+            if (mMainViewDragTranslation != 0) {
+                // 主视图可能已被移动，重新计算跟随面板的平移量
+                mMainViewDragTranslation = computeMainViewDragTranslation(mSlideableView.getTop());
+            }
+            applyParallaxForCurrentSlideOffset();
+            applyOffsetBindings();
+            mLayoutSlideOffset = mSlideOffset;
+        }
+        if (mFirstLayout && mViewportAware && mScrollableView != null) {
+            // 滚动视图的位置在第一次布局后才确定，下一帧再按可见区域重新测量
+            ViewCompat.postOnAnimation(this, mViewportMeasureRunnable);
+        }
+        if (relaidOut) {
+            // 子视图重新布局(包括其内部视图的增删和尺寸变化)后，命中测试缓存和滚动视图的索引都需要重新建立
+            invalidateViewOffsetCache();
+            mScrollableViewCandidatesDirty = true;
+        }
 
         mFirstLayout = false;
     }
@@ -935,6 +2021,10 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
+        // 嵌套滚动手势中由滚动视图分配滑动距离，不拦截也不清空拖动状态
+        if (mIsNestedScrollGesture) {
+            return false;
+        }
         // If the scrollable view is handling touch, never intercept
         if (mIsScrollableViewHandlingTouch || !isTouchEnabled()) {
             mDragHelper.abort(); // 清空滑动状态
@@ -1013,6 +2103,10 @@ public class SlidingUpPanelLayout extends ViewGroup {
     public boolean dispatchTouchEvent(MotionEvent ev) {
         final int action = MotionEventCompat.getActionMasked(ev);
 
+        if (action == MotionEvent.ACTION_DOWN) {
+            // 按下时重新计算命中测试缓存，手势过程中子孙视图的滚动不影响本次手势的命中测试
+            invalidateViewOffsetCache();
+        }
         if (!isEnabled() || !isTouchEnabled() || (mIsUnableToDrag && action != MotionEvent.ACTION_DOWN)) {
             mDragHelper.abort();
             return super.dispatchTouchEvent(ev);
@@ -1021,15 +2115,34 @@ public class SlidingUpPanelLayout extends ViewGroup {
         final float y = ev.getY();
 
         if (action == MotionEvent.ACTION_DOWN) {
+            // 触摸打断属性动画停靠，面板停在当前位置
+            stopSettleAnimator();
+            // 新的手势不再继续上一次的惯性滑动
+            mPendingHandoffVelocity = 0;
             mIsScrollableViewHandlingTouch = false;
             mPrevMotionY = y;
+            if (mAutoScrollableView) {
+                // 每个手势查找一次按下位置的滚动视图
+                final View scrollableView = findScrollableViewUnder((int) ev.getX(), (int) y);
+                setTouchScrollableView(scrollableView != null ? scrollableView : mScrollableView);
+            }
+            // 支持嵌套滚动的滚动视图通过嵌套滚动接口把滑动距离交给面板，不再需要伪造事件
+            mIsNestedScrollGesture = mTouchScrollableView != null
+                    && ViewCompat.isNestedScrollingEnabled(mTouchScrollableView)
+                    && isViewUnder(mTouchScrollableView, (int) ev.getX(), (int) y);
+            mIsNestedDragging = false;
+            if (mIsNestedScrollGesture) {
+                mIsUnableToDrag = false;
+            }
+        } else if (mIsNestedScrollGesture) {
+            return super.dispatchTouchEvent(ev);
         } else if (action == MotionEvent.ACTION_MOVE) {
             float dy = y - mPrevMotionY;
             mPrevMotionY = y;
 
             // If the scroll view isn't under the touch, pass the
             // event along to the dragView.
-            if (!isViewUnder(mScrollableView, (int) mInitialMotionX, (int) mInitialMotionY)) {
+            if (!isViewUnder(mTouchScrollableView, (int) mInitialMotionX, (int) mInitialMotionY)) {
                 return super.dispatchTouchEvent(ev);
             }
 
@@ -1037,7 +2150,7 @@ public class SlidingUpPanelLayout extends ViewGroup {
             if (dy * (mIsSlidingUp ? 1 : -1) > 0) { // Collapsing
                 // Is the child less than fully scrolled?
                 // Then let the child handle it.
-                if (mScrollableViewHelper.getScrollableViewScrollPosition(mScrollableView, mIsSlidingUp) > 0) {
+                if (mScrollableViewTracker.isScrolledFromEdge(mScrollableViewStrategy, mIsSlidingUp)) {
                     mIsScrollableViewHandlingTouch = true;
                     return super.dispatchTouchEvent(ev);
                 }
@@ -1052,9 +2165,14 @@ public class SlidingUpPanelLayout extends ViewGroup {
                     super.dispatchTouchEvent(up);
                     up.recycle();
 
-                    // Send a 'DOWN' event to the panel. (We'll cheat
-                    // and hijack this one)
-                    ev.setAction(MotionEvent.ACTION_DOWN);
+                    // Send a 'DOWN' event to the panel. (A copy, the event being
+                    // dispatched must not be modified)
+                    mIsScrollableViewHandlingTouch = false;
+                    MotionEvent down = MotionEvent.obtain(ev);
+                    down.setAction(MotionEvent.ACTION_DOWN);
+                    final boolean handled = this.onTouchEvent(down);
+                    down.recycle();
+                    return handled;
                 }
 
                 mIsScrollableViewHandlingTouch = false;
@@ -1067,27 +2185,186 @@ public class SlidingUpPanelLayout extends ViewGroup {
                     return this.onTouchEvent(ev);
                 }
 
-                // Was the panel handling the touch previously?
-                // Then we need to rejigger things so that the
-                // child gets a proper down event.
-                if (!mIsScrollableViewHandlingTouch && mDragHelper.isDragging()) {
-                    mDragHelper.cancel();
-                    ev.setAction(MotionEvent.ACTION_DOWN);
-                }
+                // Was the panel handling the touch previously?
+                // Then we need to rejigger things so that the
+                // child gets a proper down event.
+                if (!mIsScrollableViewHandlingTouch && mDragHelper.isDragging()) {
+                    mDragHelper.cancel();
+                    mIsScrollableViewHandlingTouch = true;
+                    MotionEvent down = MotionEvent.obtain(ev);
+                    down.setAction(MotionEvent.ACTION_DOWN);
+                    final boolean handled = super.dispatchTouchEvent(down);
+                    down.recycle();
+                    return handled;
+                }
+
+                mIsScrollableViewHandlingTouch = true;
+                return super.dispatchTouchEvent(ev);
+            }
+        } else if (action == MotionEvent.ACTION_UP) {
+            // If the scrollable view was handling the touch and we receive an up
+            // we want to clear any previous dragging state so we don't intercept a touch stream accidentally
+            if (mIsScrollableViewHandlingTouch) {
+                mDragHelper.setDragState(ViewDragHelper.STATE_IDLE);
+            }
+        }
+
+        // In all other cases, just let the default behavior take over.
+        return super.dispatchTouchEvent(ev);
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int axes) {
+        return onStartNestedScroll(child, target, axes, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int axes, int type) {
+        if ((axes & ViewCompat.SCROLL_AXIS_VERTICAL) == 0 || target != mTouchScrollableView
+                || !isEnabled() || !isTouchEnabled()) {
+            return false;
+        }
+        // 手指滑动只接收从滚动视图上开始的手势，惯性滑动总是接收
+        return type != ViewCompat.TYPE_TOUCH || mIsNestedScrollGesture;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        onNestedScrollAccepted(child, target, axes, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes, int type) {
+        mNestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes, type);
+        if (type == ViewCompat.TYPE_NON_TOUCH) {
+            resetNestedFling();
+            // 第一帧之前没有帧间距离可以估算，先使用惯性滑动的初始速度
+            mNestedFlingVelocity = mPendingNestedFlingVelocity;
+            mPendingNestedFlingVelocity = 0;
+        }
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        onNestedPreScroll(target, dx, dy, consumed, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed, int type) {
+        // 惯性滑动的距离全部留给滚动视图
+        if (type != ViewCompat.TYPE_TOUCH || dy == 0 || mSlideableView == null) {
+            return;
+        }
+        // 滚动距离与手指移动方向相反，面板跟随手指移动
+        final int panelDy = -dy;
+        final boolean expanding = mIsSlidingUp ? panelDy < 0 : panelDy > 0;
+        if (!mIsNestedDragging) {
+            if (expanding) {
+                // 面板完全展开后由滚动视图滚动
+                if (mSlideOffset >= 1.0f) {
+                    return;
+                }
+            } else if (mSlideOffset <= 0 || target.canScrollVertically(mIsSlidingUp ? -1 : 1)) {
+                // 滚动视图滚动到顶部之前由滚动视图滚动
+                return;
+            }
+            mDragHelper.captureChildView(mSlideableView, ViewDragHelper.INVALID_POINTER);
+            mIsNestedDragging = true;
+        }
+        final int oldTop = mSlideableView.getTop();
+        mDragHelper.dragCapturedViewBy(0, panelDy);
+        consumed[1] = oldTop - mSlideableView.getTop();
+        final boolean atBound = expanding ? mSlideOffset >= 1.0f : mSlideOffset <= 0;
+        if (consumed[1] != dy || atBound) {
+            // 面板到达边界：结束面板拖动，剩余的距离和之后的惯性滑动都交给滚动视图
+            mIsNestedDragging = false;
+            mDragHelper.releaseCapturedView(0, 0);
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed, ViewCompat.TYPE_TOUCH);
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed, int type) {
+        if (type != ViewCompat.TYPE_NON_TOUCH || mNestedFlingHandedOff) {
+            return;
+        }
+        final long frameTime = AnimationUtils.currentAnimationTimeMillis();
+        final long lastFrameTime = mNestedFlingFrameTime;
+        mNestedFlingFrameTime = frameTime;
+        if (lastFrameTime > 0 && frameTime > lastFrameTime) {
+            // 本帧的滚动距离包括滚动视图到达边缘后没有消费的部分
+            mNestedFlingVelocity = (dyConsumed + dyUnconsumed) * 1000f / (frameTime - lastFrameTime);
+        }
+        final boolean collapsing = mIsSlidingUp ? dyUnconsumed < 0 : dyUnconsumed > 0;
+        if (!collapsing || mNestedFlingVelocity == 0 || mSlideableView == null || mSlideOffset <= 0
+                || mDragHelper.getViewDragState() != ViewDragHelper.STATE_IDLE) {
+            return;
+        }
+        // 滚动视图惯性滑动到顶部：剩余的距离移动面板，剩余的速度让面板停靠到下一个收起方向的停靠点
+        mNestedFlingHandedOff = true;
+        mDragHelper.captureChildView(mSlideableView, ViewDragHelper.INVALID_POINTER);
+        mDragHelper.dragCapturedViewBy(0, -dyUnconsumed);
+        mDragHelper.releaseCapturedView(0, -mNestedFlingVelocity);
+        // 滚动视图停在边缘，不再继续分发本次惯性滑动
+        ViewCompat.stopNestedScroll(target, ViewCompat.TYPE_NON_TOUCH);
+    }
+
+    /**
+     * 清除滚动视图惯性滑动的速度估算
+     */
+    private void resetNestedFling() {
+        mNestedFlingFrameTime = 0;
+        mNestedFlingVelocity = 0;
+        mNestedFlingHandedOff = false;
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        if (!mIsNestedDragging) {
+            return false;
+        }
+        // 面板正在被拖动时由面板消费惯性滑动，滚动速度与面板的移动方向相反
+        // (面板到达边界后拖动已经结束，惯性滑动留给滚动视图)
+        mIsNestedDragging = false;
+        mDragHelper.releaseCapturedView(0, -velocityY);
+        return true;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
+        // 滚动视图随后开始惯性滑动，记录初始速度(与滚动距离的方向相同)
+        mPendingNestedFlingVelocity = consumed ? velocityY : 0;
+        return false;
+    }
+
+    @Override
+    public void onStopNestedScroll(View target) {
+        onStopNestedScroll(target, ViewCompat.TYPE_TOUCH);
+    }
 
-                mIsScrollableViewHandlingTouch = true;
-                return super.dispatchTouchEvent(ev);
-            }
-        } else if (action == MotionEvent.ACTION_UP) {
-            // If the scrollable view was handling the touch and we receive an up
-            // we want to clear any previous dragging state so we don't intercept a touch stream accidentally
-            if (mIsScrollableViewHandlingTouch) {
-                mDragHelper.setDragState(ViewDragHelper.STATE_IDLE);
-            }
+    @Override
+    public void onStopNestedScroll(View target, int type) {
+        mNestedScrollingParentHelper.onStopNestedScroll(target, type);
+        if (type == ViewCompat.TYPE_NON_TOUCH) {
+            resetNestedFling();
+        } else {
+            // 手指抬起后没有开始的惯性滑动不再保留初始速度
+            mPendingNestedFlingVelocity = 0;
         }
+        if (type == ViewCompat.TYPE_TOUCH && mIsNestedDragging) {
+            // 手指抬起时没有惯性滑动，停靠到最近的停靠点
+            mIsNestedDragging = false;
+            mDragHelper.releaseCapturedView(0, 0);
+        }
+    }
 
-        // In all other cases, just let the default behavior take over.
-        return super.dispatchTouchEvent(ev);
+    @Override
+    public int getNestedScrollAxes() {
+        return mNestedScrollingParentHelper.getNestedScrollAxes();
     }
 
     /**
@@ -1099,14 +2376,68 @@ public class SlidingUpPanelLayout extends ViewGroup {
      */
     private boolean isViewUnder(View view, int x, int y) {
         if (view == null) return false;
-        int[] viewLocation = new int[2];
-        view.getLocationOnScreen(viewLocation);
-        int[] parentLocation = new int[2];
-        this.getLocationOnScreen(parentLocation);
-        int screenX = parentLocation[0] + x;
-        int screenY = parentLocation[1] + y;
-        return screenX >= viewLocation[0] && screenX < viewLocation[0] + view.getWidth() &&
-                screenY >= viewLocation[1] && screenY < viewLocation[1] + view.getHeight();
+        ViewOffsetCache cache = obtainViewOffset(view);
+        if (cache == null) return false;
+        // 直接子视图的位置会随拖动变化，所以每次都实时读取，只缓存其内部的偏移量
+        final View child = cache.child;
+        final int left = child.getLeft() + (int) ViewCompat.getTranslationX(child) + cache.offsetX;
+        final int top = child.getTop() + (int) ViewCompat.getTranslationY(child) + cache.offsetY;
+        return x >= left && x < left + view.getWidth() &&
+                y >= top && y < top + view.getHeight();
+    }
+
+    /**
+     * 返回指定视图的命中测试缓存(缓存失效时沿父视图链重新计算)
+     *
+     * @param view View对象
+     * @return 命中测试缓存，如果视图不是该布局的子孙视图则返回null
+     */
+    private ViewOffsetCache obtainViewOffset(View view) {
+        ViewOffsetCache cache = null;
+        for (ViewOffsetCache entry : mViewOffsetCache) {
+            if (entry.view == view) {
+                cache = entry;
+                break;
+            }
+        }
+        if (cache == null) {
+            cache = mViewOffsetCache[mNextViewOffsetCacheIndex];
+            mNextViewOffsetCacheIndex = (mNextViewOffsetCacheIndex + 1) % mViewOffsetCache.length;
+            cache.view = view;
+            cache.valid = false;
+        }
+        if (!cache.valid) {
+            int offsetX = 0;
+            int offsetY = 0;
+            View current = view;
+            ViewParent parent = current.getParent();
+            while (parent != this) {
+                if (!(parent instanceof View)) {
+                    // 不是该布局的子孙视图
+                    cache.view = null;
+                    return null;
+                }
+                final View parentView = (View) parent;
+                offsetX += current.getLeft() + (int) ViewCompat.getTranslationX(current) - parentView.getScrollX();
+                offsetY += current.getTop() + (int) ViewCompat.getTranslationY(current) - parentView.getScrollY();
+                current = parentView;
+                parent = current.getParent();
+            }
+            cache.child = current;
+            cache.offsetX = offsetX;
+            cache.offsetY = offsetY;
+            cache.valid = true;
+        }
+        return cache;
+    }
+
+    /**
+     * 使命中测试缓存失效
+     */
+    private void invalidateViewOffsetCache() {
+        for (ViewOffsetCache entry : mViewOffsetCache) {
+            entry.valid = false;
+        }
     }
 
     /**
@@ -1121,6 +2452,31 @@ public class SlidingUpPanelLayout extends ViewGroup {
                 : getPaddingTop() - slidingViewHeight + mPanelHeight + slidePixelOffset;
     }
 
+    /**
+     * 根据面板视图的顶部位置计算其距折叠位置的像素距离(展开方向为正)
+     */
+    private int computeSlidePosition(int topPosition) {
+        final int topBoundCollapsed = computePanelTopPosition(0);
+        return mIsSlidingUp ? topBoundCollapsed - topPosition : topPosition - topBoundCollapsed;
+    }
+
+    /**
+     * 根据滑动面板的状态计算其对应的滑动偏移量
+     */
+    private float computeSlideOffsetForState(PanelState state) {
+        switch (state) {
+            case EXPANDED:
+                return 1.0f;
+            case ANCHORED:
+                return mAnchorPoint;
+            case HIDDEN:
+                int newTop = computePanelTopPosition(0.0f) + (mIsSlidingUp ? +mPanelHeight : -mPanelHeight);
+                return computeSlideOffset(newTop);
+            default:
+                return 0.f;
+        }
+    }
+
     /**
      * 根据面板视图的顶部位置计算滑动偏移量
      */
@@ -1193,6 +2549,8 @@ public class SlidingUpPanelLayout extends ViewGroup {
         }
         PanelState oldState = mSlideState;
         mSlideState = newState;
+        // 之前的滑动事件先于状态改变事件分发
+        flushPendingPanelSlide();
         dispatchOnPanelStateChanged(this, oldState, newState);
     }
 
@@ -1200,13 +2558,63 @@ public class SlidingUpPanelLayout extends ViewGroup {
      * 根据当前滑动偏移来更新视差
      */
     private void applyParallaxForCurrentSlideOffset() {
-        if (mParallaxOffset > 0) {
-            // 开始计算mMainView的视差偏移量
-            int mainViewOffset = getCurrentParallaxOffset();
+        if (mParallaxOffset > 0 || mResizeMode == ResizeMode.CLIP) {
+            // 开始计算mMainView的视差偏移量(CLIP策略下还需要叠加跟随面板的平移量)
+            int mainViewOffset = getCurrentParallaxOffset() + mMainViewDragTranslation;
             ViewCompat.setTranslationY(mMainView, mainViewOffset);
         }
     }
 
+    /**
+     * 根据面板的顶部位置计算主视图的高度(用于{@link LayoutParams#height})
+     *
+     * @param panelTop 滑动面板的顶部位置
+     */
+    private int computeMainViewHeight(int panelTop) {
+        if (computeSlideOffset(panelTop) > 0) {
+            return LayoutParams.MATCH_PARENT;
+        }
+        int defaultHeight = getHeight() - getPaddingBottom() - getPaddingTop() - mPanelHeight;
+        int height = mIsSlidingUp ? (panelTop - getPaddingBottom()) : (getHeight() - getPaddingBottom() - mSlideableView.getMeasuredHeight() - panelTop);
+        return height == defaultHeight ? LayoutParams.MATCH_PARENT : height;
+    }
+
+    /**
+     * {@link ResizeMode#CLIP}策略下，计算主视图在不重新布局的情况下跟随面板所需的平移量
+     *
+     * @param panelTop 滑动面板的顶部位置
+     */
+    private int computeMainViewDragTranslation(int panelTop) {
+        if (mIsSlidingUp) {
+            // 主视图始终位于顶部，露出的区域通过裁剪处理即可
+            return 0;
+        }
+        // 面板在顶部时，主视图紧贴面板底部，展开时保持在折叠位置
+        int top = mSlideOffset <= 0 ? panelTop : computePanelTopPosition(0.0f);
+        return top + mSlideableView.getMeasuredHeight() - mMainView.getTop();
+    }
+
+    /**
+     * {@link ResizeMode#CLIP}策略下，在拖动结束后一次性提交主视图的平移和尺寸
+     */
+    private void commitMainViewLayout() {
+        if (mMainView == null || mSlideableView == null || mOverlayContent) {
+            return;
+        }
+        boolean needsLayout = mMainViewDragTranslation != 0;
+        mMainViewDragTranslation = 0;
+        ViewCompat.setTranslationY(mMainView, mParallaxOffset > 0 ? getCurrentParallaxOffset() : 0);
+        LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
+        int height = computeMainViewHeight(mSlideableView.getTop());
+        if (lp.height != height) {
+            lp.height = height;
+            needsLayout = true;
+        }
+        if (needsLayout) {
+            mMainView.requestLayout();
+        }
+    }
+
     /**
      * 触摸手势在drag下，处理mMainView的视差偏移和LayoutParams
      *
@@ -1219,27 +2627,104 @@ public class SlidingUpPanelLayout extends ViewGroup {
         setPanelStateInternal(PanelState.DRAGGING);
         // 根据新的顶部位置重新计算滑动偏移量
         mSlideOffset = computeSlideOffset(newTop);
+        if (!mOverlayContent && mResizeMode == ResizeMode.CLIP) {
+            // 只平移主视图，布局在拖动结束后统一提交
+            mMainViewDragTranslation = computeMainViewDragTranslation(newTop);
+        }
         applyParallaxForCurrentSlideOffset();
+        applyOffsetBindings();
         // 分发滑动面板的位置改变事件
-        dispatchOnPanelSlide(mSlideableView);
+        requestPanelSlideDispatch();
+        if (mScrollableViewClipped && computeVisiblePanelExtent(mSlideOffset) > mRevealedExtent) {
+            // 面板露出了新的区域，让滚动视图按新的可见区域重新测量
+            mScrollableView.requestLayout();
+        }
+        if (mOverlayContent || mResizeMode == ResizeMode.CLIP) {
+            return;
+        }
         // If the slide offset is negative, and overlay is not on, we need to increase the
         // height of the main content
         LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
-        int defaultHeight = getHeight() - getPaddingBottom() - getPaddingTop() - mPanelHeight;
-
-        if (mSlideOffset <= 0 && !mOverlayContent) {
+        if (mSlideOffset <= 0) {
             // 展开主视图
-            lp.height = mIsSlidingUp ? (newTop - getPaddingBottom()) : (getHeight() - getPaddingBottom() - mSlideableView.getMeasuredHeight() - newTop);
-            if (lp.height == defaultHeight) {
-                lp.height = LayoutParams.MATCH_PARENT;
-            }
+            lp.height = computeMainViewHeight(newTop);
             mMainView.requestLayout();
-        } else if (lp.height != LayoutParams.MATCH_PARENT && !mOverlayContent) {
+        } else if (lp.height != LayoutParams.MATCH_PARENT) {
             lp.height = LayoutParams.MATCH_PARENT;
             mMainView.requestLayout();
         }
     }
 
+    /**
+     * 滑动面板停止移动后，根据其位置更新滑动偏移量和状态
+     */
+    private void onPanelSettled() {
+        final float handoffVelocity = mPendingHandoffVelocity;
+        mPendingHandoffVelocity = 0;
+        demoteLayers();
+        mSlideOffset = computeSlideOffset(mSlideableView.getTop());
+        if (mResizeMode == ResizeMode.CLIP) {
+            commitMainViewLayout();
+        } else {
+            applyParallaxForCurrentSlideOffset();
+        }
+        applyOffsetBindings();
+
+        if (mSlideOffset == 1) {
+            updateObscuredViewVisibility();
+            setPanelStateInternal(PanelState.EXPANDED);
+            if (handoffVelocity > 0) {
+                handoffFling(handoffVelocity);
+            }
+        } else if (mSlideOffset == 0) {
+            setPanelStateInternal(PanelState.COLLAPSED);
+        } else if (mSlideOffset < 0) {
+            setPanelStateInternal(PanelState.HIDDEN);
+            mSlideableView.setVisibility(View.INVISIBLE);
+        } else {
+            updateObscuredViewVisibility();
+            setPanelStateInternal(PanelState.ANCHORED);
+        }
+        dispatchOnPanelSnapped(mSlideableView);
+    }
+
+    /**
+     * 估算惯性滑动在不受阻挡时能够滑动的距离
+     *
+     * @param velocity 释放时的速度(单位：像素每秒)
+     * @return 滑动距离(单位：px，不超过面板的滑动距离)
+     */
+    private int computeFlingDistance(float velocity) {
+        return (int) Math.min(velocity * velocity / (2 * mFlingDeceleration), mSlideRange);
+    }
+
+    /**
+     * 估算惯性滑动经过指定距离后剩余的速度
+     *
+     * @param velocity 释放时的速度(单位：像素每秒)
+     * @param distance 滑动距离(单位：px)
+     * @return 剩余速度(不能到达时为0)
+     */
+    private float computeRemainingVelocity(float velocity, int distance) {
+        final float remaining = velocity * velocity - 2 * mFlingDeceleration * distance;
+        return remaining > 0 ? (float) Math.sqrt(remaining) : 0;
+    }
+
+    /**
+     * 将面板展开后剩余的速度传递给滚动视图，一次惯性滑动既展开面板又滚动内容
+     *
+     * @param velocity 剩余速度(单位：像素每秒，展开方向为正)
+     */
+    private void handoffFling(float velocity) {
+        final View scrollableView = mTouchScrollableView != null ? mTouchScrollableView : mScrollableView;
+        if (scrollableView == null || !scrollableView.isShown()) {
+            return;
+        }
+        // 向上展开的面板继续向上滑动即向内容底部滚动
+        final int velocityY = (int) (mIsSlidingUp ? velocity : -velocity);
+        mScrollableViewHelper.flingScrollableView(scrollableView, velocityY);
+    }
+
     @Override
     protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
         // 必须需要save后，来clipRect
@@ -1249,14 +2734,38 @@ public class SlidingUpPanelLayout extends ViewGroup {
             // Clip against the slider; no sense drawing what will immediately be covered,
             // Unless the panel is set to overlay content
             canvas.getClipBounds(mTmpRect);
-            if (!mOverlayContent) {
+            // 不透明且横向完全覆盖绘制区域的面板：无论是否覆盖内容，面板下方的主视图都不需要绘制
+            boolean covered = false;
+            if (isPanelDrawnOpaque()) {
+                final int panelLeft = mSlideableView.getLeft() + Math.round(ViewCompat.getTranslationX(mSlideableView));
+                final int panelTop = mSlideableView.getTop() + Math.round(ViewCompat.getTranslationY(mSlideableView));
+                if (panelLeft <= mTmpRect.left && panelLeft + mSlideableView.getWidth() >= mTmpRect.right) {
+                    if (mIsSlidingUp) {
+                        mTmpRect.bottom = Math.min(mTmpRect.bottom, panelTop);
+                    } else {
+                        mTmpRect.top = Math.max(mTmpRect.top, panelTop + mSlideableView.getHeight());
+                    }
+                    covered = true;
+                }
+            }
+            if (!covered && !mOverlayContent) {
                 if (mIsSlidingUp) {
                     mTmpRect.bottom = Math.min(mTmpRect.bottom, mSlideableView.getTop());
                 } else {
                     mTmpRect.top = Math.max(mTmpRect.top, mSlideableView.getBottom());
                 }
             }
-            if (mClipPanel) {
+            if (covered) {
+                final int childLeft = child.getLeft() + Math.round(ViewCompat.getTranslationX(child));
+                final int childTop = child.getTop() + Math.round(ViewCompat.getTranslationY(child));
+                if (mTmpRect.isEmpty() || !mTmpRect.intersects(childLeft, childTop,
+                        childLeft + child.getWidth(), childTop + child.getHeight())) {
+                    // 主视图完全被面板遮挡，跳过绘制
+                    canvas.restoreToCount(save);
+                    return false;
+                }
+            }
+            if (covered || mClipPanel || (!mOverlayContent && mResizeMode == ResizeMode.CLIP)) {
                 canvas.clipRect(mTmpRect); // 裁剪画布
             }
 
@@ -1292,24 +2801,212 @@ public class SlidingUpPanelLayout extends ViewGroup {
         }
         // 计算滑动到最终坐标的顶部位置
         int panelTop = computePanelTopPosition(slideOffset);
+        if (mSettleAnimatorEnabled) {
+            if (mDragHelper.getViewDragState() == ViewDragHelper.STATE_SETTLING) {
+                mDragHelper.abort();
+            }
+            if (startSettleAnimator(panelTop, velocity)) {
+                setAllChildrenVisible();
+                prepareMainViewForSettle(panelTop);
+                return true;
+            }
+            return false;
+        }
         // 开始准备滑动mSlideableView到指定位置
         if (mDragHelper.smoothSlideViewTo(mSlideableView, mSlideableView.getLeft(), panelTop)) {
             setAllChildrenVisible();
-            ViewCompat.postInvalidateOnAnimation(this);// 刷新视图
+            prepareMainViewForSettle(panelTop);
             return true;
         }
         return false;
     }
 
-    @Override
-    public void computeScroll() {
-        //在滑动中，若此时是非move事件触发的，DragHelper会把当前的mDragState设置为STATE_SETTLING。此时会进入此分支，来处理接下来的位移动画
-        if (mDragHelper != null && mDragHelper.continueSettling(true)) {
-            if (!isEnabled()) {
-                mDragHelper.abort();
-                return;
+    /**
+     * 使用属性动画将滑动面板停靠到指定位置(正在进行的属性动画停靠从当前位置转向新的目标)
+     *
+     * @param targetTop 滑动面板最终的顶部位置
+     * @param velocity  滑动的初始速度或0
+     * @return 是否开始停靠
+     */
+    private boolean startSettleAnimator(int targetTop, float velocity) {
+        final int startTop = mSlideableView.getTop();
+        final boolean retarget = isSettleAnimatorRunning();
+        if (retarget) {
+            // 转向时不提交停靠状态
+            mSettleAnimator.cancel();
+        }
+        if (targetTop == startTop) {
+            if (retarget) {
+                onPanelSettled();
             }
-            ViewCompat.postInvalidateOnAnimation(this);
+            return false;
+        }
+        if (mSettleAnimator == null) {
+            final SettleAnimatorListener listener = new SettleAnimatorListener();
+            mSettleAnimator = new ValueAnimator();
+            mSettleAnimator.addUpdateListener(listener);
+            mSettleAnimator.addListener(listener);
+        }
+        mSettleAnimator.setIntValues(startTop, targetTop);
+        mSettleAnimator.setDuration(mDragHelper.computeSettleDuration(mSlideableView, 0, targetTop - startTop, 0, (int) velocity));
+        mSettleAnimator.setInterpolator(mSettleInterpolator);
+        promoteLayers();
+        mSettleAnimator.start();
+        return true;
+    }
+
+    /**
+     * 停止正在进行的属性动画停靠，面板停在当前位置
+     */
+    private void stopSettleAnimator() {
+        if (isSettleAnimatorRunning()) {
+            mSettleAnimator.cancel();
+            onPanelSettled();
+        }
+    }
+
+    /**
+     * 返回是否正在使用属性动画停靠
+     */
+    private boolean isSettleAnimatorRunning() {
+        return mSettleAnimator != null && mSettleAnimator.isStarted();
+    }
+
+    /**
+     * {@link ResizeMode#CLIP}策略下，停靠开始前将主视图调整到停靠过程中需要的最大尺寸
+     * <p>拖动时面板不会越过折叠位置，只有隐藏面板的停靠会让滑动偏移量小于0，
+     * 此时主视图必须覆盖面板让出的区域，否则停靠过程中会露出空白</p>
+     *
+     * @param panelTop 停靠的目标顶部位置
+     */
+    private void prepareMainViewForSettle(int panelTop) {
+        if (mOverlayContent || mResizeMode != ResizeMode.CLIP || mMainView == null) {
+            return;
+        }
+        // 停靠范围内最接近隐藏位置的顶部位置
+        final int currentTop = mSlideableView.getTop();
+        final int hiddenMostTop = mIsSlidingUp ? Math.max(panelTop, currentTop) : Math.min(panelTop, currentTop);
+        if (computeSlideOffset(hiddenMostTop) >= 0) {
+            return;
+        }
+        // 向上滑动为展开时主视图顶部固定，裁剪到面板顶部即可；
+        // 向下滑动为展开时主视图通过平移跟随面板底部，底部超出布局的部分由父布局裁剪
+        LayoutParams lp = (LayoutParams) mMainView.getLayoutParams();
+        int height = computeMainViewHeight(hiddenMostTop);
+        if (lp.height != height) {
+            lp.height = height;
+            mMainView.requestLayout();
+        }
+    }
+
+    /**
+     * 滑动开始时将滑动面板和主视图提升为硬件层
+     */
+    private void promoteLayers() {
+        if (!mLayerPromotionEnabled || !isHardwareAccelerated() || mSlideableView == null) {
+            return;
+        }
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        if (!mPanelLayerPromoted && !mPanelInvalidations.isBusy(now)
+                && mSlideableView.getWidth() * mSlideableView.getHeight() >= getWidth() * getHeight() * MIN_LAYER_AREA_FRACTION
+                && canPromoteToLayer(mSlideableView)) {
+            promoteToLayer(mSlideableView);
+            mPanelLayerPromoted = true;
+        }
+        // 只有视差偏移或蒙层存在时主视图才会随滑动重新绘制
+        if (!mMainLayerPromoted && mMainView != null && (mParallaxOffset > 0 || mCoveredFadeColor != 0)
+                && !mMainInvalidations.isBusy(now) && canPromoteToLayer(mMainView)) {
+            promoteToLayer(mMainView);
+            mMainLayerPromoted = true;
+        }
+    }
+
+    private boolean canPromoteToLayer(View view) {
+        return view.getVisibility() == View.VISIBLE && view.getLayerType() == View.LAYER_TYPE_NONE
+                && (mLayerPromotionCallback == null || mLayerPromotionCallback.canPromoteToLayer(view));
+    }
+
+    private void promoteToLayer(View view) {
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        if (ViewCompat.isAttachedToWindow(view)) {
+            // 提前生成图层，避免第一帧卡顿
+            view.buildLayer();
+        }
+    }
+
+    /**
+     * 滑动停止时撤销由本布局提升的硬件层
+     */
+    private void demoteLayers() {
+        removeCallbacks(mDemoteBusyLayersRunnable);
+        if (mPanelLayerPromoted) {
+            mPanelLayerPromoted = false;
+            mSlideableView.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+        if (mMainLayerPromoted) {
+            mMainLayerPromoted = false;
+            mMainView.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    }
+
+    /**
+     * 撤销内容刷新过于频繁的硬件层(图层每一帧都需要重新渲染时反而增加开销)
+     */
+    private void demoteBusyLayers() {
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        if (mPanelLayerPromoted && mPanelInvalidations.isBusy(now)) {
+            mPanelLayerPromoted = false;
+            mSlideableView.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+        if (mMainLayerPromoted && mMainInvalidations.isBusy(now)) {
+            mMainLayerPromoted = false;
+            mMainView.setLayerType(View.LAYER_TYPE_NONE, null);
+        }
+    }
+
+    @Override
+    public void onDescendantInvalidated(View child, View target) {
+        super.onDescendantInvalidated(child, target);
+        // 只统计子视图内部内容的刷新，子视图本身的移动和属性变化不计入
+        if (!mLayerPromotionEnabled || child == target) {
+            return;
+        }
+        final InvalidationCounter counter;
+        final boolean promoted;
+        if (child == mSlideableView) {
+            counter = mPanelInvalidations;
+            promoted = mPanelLayerPromoted;
+        } else if (child == mMainView) {
+            counter = mMainInvalidations;
+            promoted = mMainLayerPromoted;
+        } else {
+            return;
+        }
+        final long now = AnimationUtils.currentAnimationTimeMillis();
+        counter.record(now);
+        if (promoted && counter.isBusy(now)) {
+            removeCallbacks(mDemoteBusyLayersRunnable);
+            ViewCompat.postOnAnimation(this, mDemoteBusyLayersRunnable);
+        }
+    }
+
+    /**
+     * 提交下一帧的停靠动画回调(DragHelper进入STATE_SETTLING时调用)
+     */
+    private void scheduleSettleFrame() {
+        if (!mSettleFrameScheduled) {
+            mSettleFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mSettleFrameCallback);
+        }
+    }
+
+    /**
+     * 取消已提交的停靠动画回调
+     */
+    private void cancelSettleFrame() {
+        if (mSettleFrameScheduled) {
+            mSettleFrameScheduled = false;
+            Choreographer.getInstance().removeFrameCallback(mSettleFrameCallback);
         }
     }
 
@@ -1417,22 +3114,18 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         @Override
         public void onViewDragStateChanged(int state) {
-            if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_IDLE) {
-                mSlideOffset = computeSlideOffset(mSlideableView.getTop());
-                applyParallaxForCurrentSlideOffset();
-
-                if (mSlideOffset == 1) {
-                    updateObscuredViewVisibility();
-                    setPanelStateInternal(PanelState.EXPANDED);
-                } else if (mSlideOffset == 0) {
-                    setPanelStateInternal(PanelState.COLLAPSED);
-                } else if (mSlideOffset < 0) {
-                    setPanelStateInternal(PanelState.HIDDEN);
-                    mSlideableView.setVisibility(View.INVISIBLE);
-                } else {
-                    updateObscuredViewVisibility();
-                    setPanelStateInternal(PanelState.ANCHORED);
-                }
+            if (state == ViewDragHelper.STATE_SETTLING) {
+                scheduleSettleFrame();
+            } else {
+                cancelSettleFrame();
+            }
+            if (state != ViewDragHelper.STATE_IDLE) {
+                promoteLayers();
+            }
+            // 释放后由属性动画停靠时，动画结束再提交停靠状态
+            if (mDragHelper != null && mDragHelper.getViewDragState() == ViewDragHelper.STATE_IDLE
+                    && !isSettleAnimatorRunning()) {
+                onPanelSettled();
             }
         }
 
@@ -1449,34 +3142,33 @@ public class SlidingUpPanelLayout extends ViewGroup {
 
         @Override
         public void onViewReleased(View releasedChild, float xvel, float yvel) {
-            int target = 0;
-
             // direction is always positive if we are sliding in the expanded direction
             float direction = mIsSlidingUp ? -yvel : yvel;
 
-            if (direction > 0 && mSlideOffset <= mAnchorPoint) {
-                // swipe up -> expand and stop at anchor point
-                target = computePanelTopPosition(mAnchorPoint);
-            } else if (direction > 0 && mSlideOffset > mAnchorPoint) {
-                // swipe up past anchor -> expand
-                target = computePanelTopPosition(1.0f);
-            } else if (direction < 0 && mSlideOffset >= mAnchorPoint) {
-                // swipe down -> collapse and stop at anchor point
-                target = computePanelTopPosition(mAnchorPoint);
-            } else if (direction < 0 && mSlideOffset < mAnchorPoint) {
-                // swipe down past anchor -> collapse
-                target = computePanelTopPosition(0.0f);
-            } else if (mSlideOffset >= (1.f + mAnchorPoint) / 2) {
-                // zero velocity, and far enough from anchor point => expand to the top
-                target = computePanelTopPosition(1.0f);
-            } else if (mSlideOffset >= mAnchorPoint / 2) {
-                // zero velocity, and close enough to anchor point => go to anchor
-                target = computePanelTopPosition(mAnchorPoint);
+            final int position = computeSlidePosition(releasedChild.getTop());
+            final int index;
+            if (direction > 0) {
+                // swipe up -> stop at the snap point nearest to where the fling would come to rest,
+                // but at least at the next one in the expanded direction
+                final int resting = position + computeFlingDistance(direction);
+                index = Math.max(mSnapPoints.nearestIndex(resting), mSnapPoints.ceilIndex(position));
+            } else if (direction < 0) {
+                // swipe down -> same in the collapsed direction
+                final int resting = position - computeFlingDistance(direction);
+                index = Math.min(mSnapPoints.nearestIndex(resting), mSnapPoints.floorIndex(position));
             } else {
-                // settle at the bottom
-                target = computePanelTopPosition(0.0f);
+                // zero velocity -> settle at the nearest snap point
+                index = mSnapPoints.nearestIndex(position);
             }
+            int target = computePanelTopPosition(mSnapPoints.getOffset(index));
+            mPendingHandoffVelocity = mFlingHandoffEnabled && direction > 0 && mSnapPoints.getOffset(index) == 1.0f
+                    ? computeRemainingVelocity(direction, Math.abs(target - releasedChild.getTop())) : 0;
 
+            if (mSettleAnimatorEnabled && startSettleAnimator(target, yvel)) {
+                // 由属性动画完成停靠，DragHelper直接回到空闲状态
+                invalidate();
+                return;
+            }
             if (mDragHelper != null) {
                 mDragHelper.settleCapturedViewAt(releasedChild.getLeft(), target);
             }
@@ -1500,6 +3192,112 @@ public class SlidingUpPanelLayout extends ViewGroup {
         }
     }
 
+    /**
+     * 属性动画停靠的每一帧按动画值移动滑动面板，正常结束时提交停靠状态
+     */
+    private class SettleAnimatorListener extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+        private boolean mCanceled;
+
+        @Override
+        public void onAnimationStart(Animator animation) {
+            mCanceled = false;
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            final int dy = (Integer) animation.getAnimatedValue() - mSlideableView.getTop();
+            if (dy != 0) {
+                ViewCompat.offsetTopAndBottom(mSlideableView, dy);
+                onPanelDragged(mSlideableView.getTop());
+                invalidate();
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            mCanceled = true;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (!mCanceled) {
+                onPanelSettled();
+            }
+        }
+    }
+
+    /**
+     * 在垂直同步信号到来时，以帧时间推进停靠动画
+     * <p>若此时是非move事件触发的，DragHelper会把当前的mDragState设置为STATE_SETTLING，
+     * 每一帧根据帧时间移动面板，只有位置真正改变时才会刷新视图，
+     * 动画结束时在同一帧内切换到空闲状态</p>
+     */
+    private class SettleFrameCallback implements Choreographer.FrameCallback {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mSettleFrameScheduled = false;
+            if (!isEnabled()) {
+                mDragHelper.abort();
+                return;
+            }
+            if (mDragHelper.continueSettling(false, frameTimeNanos / 1000000)) {
+                scheduleSettleFrame();
+            }
+        }
+    }
+
+    /**
+     * 子孙视图相对于其所在直接子视图的偏移量缓存
+     */
+    private static final class ViewOffsetCache {
+        View view;
+        View child;
+        int offsetX;
+        int offsetY;
+        boolean valid;
+    }
+
+    /**
+     * 统计子视图内容在最近一段时间内的刷新次数
+     */
+    private static final class InvalidationCounter {
+        /**
+         * 统计的时间窗口(单位：ms)
+         */
+        static final long WINDOW = 500;
+        /**
+         * 时间窗口内刷新次数超过该值时认为内容在持续刷新
+         */
+        static final int MAX_INVALIDATIONS = 8;
+
+        long windowStart = -2 * WINDOW;
+        int count;
+        int previousCount;
+
+        void record(long now) {
+            final long elapsed = now - windowStart;
+            if (elapsed >= WINDOW) {
+                previousCount = elapsed < 2 * WINDOW ? count : 0;
+                windowStart = now;
+                count = 0;
+            }
+            count++;
+        }
+
+        boolean isBusy(long now) {
+            final long elapsed = now - windowStart;
+            if (elapsed >= 2 * WINDOW) {
+                return false;
+            }
+            if (elapsed >= WINDOW) {
+                return count > MAX_INVALIDATIONS;
+            }
+            return Math.max(count, previousCount) > MAX_INVALIDATIONS;
+        }
+    }
+
     public static class LayoutParams extends MarginLayoutParams {
 
         private static final int[] ATTRS = new int[]{
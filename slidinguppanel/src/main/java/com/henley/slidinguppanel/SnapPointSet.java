@@ -0,0 +1,189 @@
+package com.henley.slidinguppanel;
+
+import java.util.Arrays;
+
+/**
+ * 滑动面板停靠点集合(按滑动偏移量升序排列)
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>每个停靠点由一个标识和一个滑动偏移量(有效值范围[0,1])组成
+ * <li>停靠点的像素位置(距折叠位置的距离)与滑动偏移量一一对应，滑动距离改变时在{@link #computePositions(int)}中重新计算，
+ * 添加和移除停靠点时按最近一次的滑动距离同步更新
+ * <li>释放面板时通过二分查找确定目标停靠点
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+final class SnapPointSet {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] mIds = new int[INITIAL_CAPACITY];
+    private float[] mOffsets = new float[INITIAL_CAPACITY];
+    /**
+     * 停靠点距折叠位置的像素距离(与mOffsets一一对应，升序)
+     */
+    private int[] mPositions = new int[INITIAL_CAPACITY];
+    private int mSize;
+    /**
+     * 最近一次计算像素位置时的滑动距离(单位：px)
+     */
+    private int mSlideRange;
+    /**
+     * 尚未按滑动距离计算过像素位置
+     */
+    private boolean mDirty = true;
+
+    /**
+     * 添加停靠点，如果标识已存在则替换其滑动偏移量
+     *
+     * @param id     停靠点标识
+     * @param offset 停靠点的滑动偏移量
+     */
+    void put(int id, float offset) {
+        remove(id);
+        if (mSize == mIds.length) {
+            final int capacity = mSize * 2;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+            mPositions = Arrays.copyOf(mPositions, capacity);
+        }
+        int index = mSize;
+        while (index > 0 && mOffsets[index - 1] > offset) {
+            mIds[index] = mIds[index - 1];
+            mOffsets[index] = mOffsets[index - 1];
+            mPositions[index] = mPositions[index - 1];
+            index--;
+        }
+        mIds[index] = id;
+        mOffsets[index] = offset;
+        mPositions[index] = (int) (offset * mSlideRange);
+        mSize++;
+    }
+
+    /**
+     * 移除停靠点
+     *
+     * @param id 停靠点标识
+     * @return 是否移除成功
+     */
+    boolean remove(int id) {
+        final int index = indexOfId(id);
+        if (index < 0) {
+            return false;
+        }
+        final int moved = mSize - index - 1;
+        System.arraycopy(mIds, index + 1, mIds, index, moved);
+        System.arraycopy(mOffsets, index + 1, mOffsets, index, moved);
+        System.arraycopy(mPositions, index + 1, mPositions, index, moved);
+        mSize--;
+        return true;
+    }
+
+    /**
+     * 返回停靠点的索引
+     *
+     * @param id 停靠点标识
+     * @return 停靠点的索引，不存在则返回-1
+     */
+    int indexOfId(int id) {
+        for (int i = 0; i < mSize; i++) {
+            if (mIds[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int getId(int index) {
+        return mIds[index];
+    }
+
+    float getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    boolean isDirty() {
+        return mDirty;
+    }
+
+    /**
+     * 根据滑动面板可以滑动的距离重新计算所有停靠点的像素位置
+     *
+     * @param slideRange 滑动面板可以滑动的距离(单位：px)
+     */
+    void computePositions(int slideRange) {
+        mSlideRange = slideRange;
+        for (int i = 0; i < mSize; i++) {
+            mPositions[i] = (int) (mOffsets[i] * slideRange);
+        }
+        mDirty = false;
+    }
+
+    /**
+     * 返回与指定像素位置完全重合的停靠点索引
+     *
+     * @param position 距折叠位置的像素距离
+     * @return 停靠点的索引，不存在则返回-1
+     */
+    int indexOfPosition(int position) {
+        final int index = Arrays.binarySearch(mPositions, 0, mSize, position);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * 返回位置大于等于指定像素位置的第一个停靠点索引(不存在则返回最后一个)
+     *
+     * @param position 距折叠位置的像素距离
+     */
+    int ceilIndex(int position) {
+        int low = 0;
+        int high = mSize - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (mPositions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 返回位置小于等于指定像素位置的最后一个停靠点索引(不存在则返回第一个)
+     *
+     * @param position 距折叠位置的像素距离
+     */
+    int floorIndex(int position) {
+        int low = 0;
+        int high = mSize - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (mPositions[mid] > position) {
+                high = mid - 1;
+            } else {
+                low = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 返回距离指定像素位置最近的停靠点索引(距离相同时取较大的位置)
+     *
+     * @param position 距折叠位置的像素距离
+     */
+    int nearestIndex(int position) {
+        final int ceil = ceilIndex(position);
+        if (ceil > 0 && position - mPositions[ceil - 1] < mPositions[ceil] - position) {
+            return ceil - 1;
+        }
+        return ceil;
+    }
+}
@@ -0,0 +1,73 @@
+package com.henley.slidinguppanel;
+
+import java.util.Arrays;
+
+/**
+ * 写时复制的数组快照(用于保存监听器)
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>添加和移除元素时复制出新的数组并整体替换，已经读取到的快照不会再改变
+ * <li>分发事件时只读取一次快照并按下标遍历，不加锁也不分配内存；数组未修改时每次读取到的都是同一个实例
+ * <li>添加和移除之间使用锁，保证并发修改不会丢失
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+final class SnapshotArray<T> {
+
+    private final Object mLock = new Object();
+    private volatile T[] mItems;
+
+    /**
+     * @param empty 元素类型的空数组(没有元素时作为快照使用)
+     */
+    SnapshotArray(T[] empty) {
+        if (empty == null || empty.length != 0) {
+            throw new IllegalArgumentException("Initial snapshot must be an empty array.");
+        }
+        mItems = empty;
+    }
+
+    /**
+     * 返回当前的快照(调用方不能修改返回的数组)
+     */
+    T[] get() {
+        return mItems;
+    }
+
+    /**
+     * 在末尾添加一个元素
+     *
+     * @param item 添加的元素
+     */
+    void add(T item) {
+        synchronized (mLock) {
+            final T[] items = mItems;
+            final T[] newItems = Arrays.copyOf(items, items.length + 1);
+            newItems[items.length] = item;
+            mItems = newItems;
+        }
+    }
+
+    /**
+     * 移除第一个与指定元素相同(同一个实例)的元素
+     *
+     * @param item 移除的元素
+     * @return 是否移除了元素
+     */
+    boolean remove(T item) {
+        synchronized (mLock) {
+            final T[] items = mItems;
+            for (int i = 0; i < items.length; i++) {
+                if (items[i] == item) {
+                    final T[] newItems = Arrays.copyOf(items, items.length - 1);
+                    System.arraycopy(items, i + 1, newItems, i, items.length - i - 1);
+                    mItems = newItems;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.henley.slidinguppanel;
+
+/**
+ * 基于临界阻尼弹簧的滑动面板停靠动画引擎
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>位置是时间的解析函数，每一帧根据帧时间计算，与刷新率无关
+ * <li>动画进行中重新指定目标时会保留当前速度，运动保持连续
+ * <li>初速度较大时临界阻尼弹簧也会越过目标，此时直接停在目标位置；停靠过程中位置限制在起点和目标之间
+ * <li>快速滑动({@link #startFling})时以速度投影出的位置(限制在边界内)作为弹簧的目标
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class SpringSettleEngine extends ViewDragHelper.SettleEngine {
+
+    /**
+     * 默认弹簧刚度
+     */
+    public static final float DEFAULT_STIFFNESS = 600f;
+    /**
+     * 快速滑动时用于投影目标位置的时间常数(单位：s)
+     */
+    private static final float FLING_PROJECTION_TIME = 0.3f;
+    /**
+     * 距离目标小于该值(单位：px)时认为已经静止
+     */
+    private static final float REST_DISPLACEMENT = 0.5f;
+    /**
+     * 速度小于该值(单位：px/s)时认为已经静止
+     */
+    private static final float REST_VELOCITY = 20f;
+
+    /**
+     * 弹簧的固有角频率(临界阻尼时阻尼系数为2ω)
+     */
+    private final float mNaturalFrequency;
+    private final Axis mAxisX = new Axis();
+    private final Axis mAxisY = new Axis();
+    private boolean mFinished = true;
+
+    public SpringSettleEngine() {
+        this(DEFAULT_STIFFNESS);
+    }
+
+    /**
+     * @param stiffness 弹簧刚度(必须大于0，值越大停靠越快)
+     */
+    public SpringSettleEngine(float stiffness) {
+        if (stiffness <= 0) {
+            throw new IllegalArgumentException("Spring stiffness must be greater than 0.");
+        }
+        mNaturalFrequency = (float) Math.sqrt(stiffness);
+    }
+
+    @Override
+    public void startSettle(int startX, int startY, int finalX, int finalY, int xvel, int yvel, long timeMillis) {
+        final boolean retarget = !mFinished && xvel == 0 && yvel == 0;
+        mAxisX.start(startX, finalX, retarget ? mAxisX.velocity : xvel, Math.min(startX, finalX), Math.max(startX, finalX));
+        mAxisY.start(startY, finalY, retarget ? mAxisY.velocity : yvel, Math.min(startY, finalY), Math.max(startY, finalY));
+        start(timeMillis);
+    }
+
+    @Override
+    public void startFling(int startX, int startY, int xvel, int yvel, int minX, int maxX, int minY, int maxY, long timeMillis) {
+        final int finalX = clamp(Math.round(startX + xvel * FLING_PROJECTION_TIME), minX, maxX);
+        final int finalY = clamp(Math.round(startY + yvel * FLING_PROJECTION_TIME), minY, maxY);
+        mAxisX.start(startX, finalX, xvel, minX, maxX);
+        mAxisY.start(startY, finalY, yvel, minY, maxY);
+        start(timeMillis);
+    }
+
+    private void start(long timeMillis) {
+        mAxisX.startTime = timeMillis;
+        mAxisY.startTime = timeMillis;
+        mFinished = mAxisX.isAtRest() && mAxisY.isAtRest();
+        if (mFinished) {
+            mAxisX.finish();
+            mAxisY.finish();
+        }
+    }
+
+    @Override
+    public boolean computeOffset(long timeMillis) {
+        if (mFinished) {
+            return false;
+        }
+        mAxisX.update(timeMillis, mNaturalFrequency);
+        mAxisY.update(timeMillis, mNaturalFrequency);
+        if (mAxisX.isAtRest() && mAxisY.isAtRest()) {
+            abortAnimation();
+        }
+        return true;
+    }
+
+    @Override
+    public int getCurrX() {
+        return mAxisX.current;
+    }
+
+    @Override
+    public int getCurrY() {
+        return mAxisY.current;
+    }
+
+    @Override
+    public int getFinalX() {
+        return mAxisX.target;
+    }
+
+    @Override
+    public int getFinalY() {
+        return mAxisY.target;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    @Override
+    public void abortAnimation() {
+        mAxisX.finish();
+        mAxisY.finish();
+        mFinished = true;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    /**
+     * 单个坐标轴上的弹簧运动状态
+     */
+    private static final class Axis {
+        int target;
+        int current;
+        int min;
+        int max;
+        /**
+         * 开始时距离目标的位移(单位：px)
+         */
+        float startDisplacement;
+        /**
+         * 开始时的速度(单位：px/s)
+         */
+        float startVelocity;
+        long startTime;
+        /**
+         * 当前位移和速度
+         */
+        float displacement;
+        float velocity;
+
+        void start(int start, int target, float velocity, int min, int max) {
+            this.target = target;
+            this.current = start;
+            this.min = min;
+            this.max = max;
+            this.startDisplacement = start - target;
+            this.startVelocity = velocity;
+            this.displacement = startDisplacement;
+            this.velocity = velocity;
+        }
+
+        void update(long timeMillis, float omega) {
+            final float t = Math.max(0, timeMillis - startTime) / 1000f;
+            // 临界阻尼：x(t) = (x0 + (v0 + ωx0)t)e^(-ωt)
+            final float b = startVelocity + omega * startDisplacement;
+            final float decay = (float) Math.exp(-omega * t);
+            displacement = (startDisplacement + b * t) * decay;
+            velocity = (startVelocity - omega * b * t) * decay;
+            if (displacement * startDisplacement <= 0) {
+                // 越过(或到达)目标，停在目标位置而不是冲过去再回来
+                finish();
+                return;
+            }
+            current = Math.max(min, Math.min(Math.round(target + displacement), max));
+        }
+
+        boolean isAtRest() {
+            return Math.abs(displacement) < REST_DISPLACEMENT && Math.abs(velocity) < REST_VELOCITY;
+        }
+
+        void finish() {
+            current = target;
+            displacement = 0;
+            velocity = 0;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.henley.slidinguppanel;
+
+/**
+ * 触摸点速度估算器
+ * <ul>
+ * <strong>说明：</strong>
+ * <li>每个触摸点使用固定大小的环形缓冲区保存最近的采样(位置和时间)，创建后不再分配内存
+ * <li>调用方应该把{@link android.view.MotionEvent}中的历史采样也依次加入，批量上报的采样不会丢失
+ * <li>速度由最近{@link #HORIZON_MILLIS}毫秒内的采样做二次多项式加权最小二乘拟合得到(取最新采样时刻的导数)，
+ * 越新的采样权重越大，采样不足三个时退化为一次拟合
+ * <li>相邻采样间隔超过{@link #ASSUME_STOPPED_MILLIS}毫秒时认为触摸点曾经停止，之前的采样被丢弃
+ * <li>同一拟合结果(速度和加速度)也用于预测触摸点在之后某一时刻的位置
+ * <li>只依赖Java基础类型，可以在JVM上直接测试
+ * </ul>
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+final class VelocityEstimator {
+
+    /**
+     * 每个触摸点保存的采样数量
+     */
+    static final int HISTORY_SIZE = 20;
+    /**
+     * 参与拟合的采样的时间范围(单位：ms)
+     */
+    static final long HORIZON_MILLIS = 100;
+    /**
+     * 相邻采样间隔超过该值时认为触摸点曾经停止(单位：ms)
+     */
+    static final long ASSUME_STOPPED_MILLIS = 40;
+    /**
+     * 拟合时间范围边缘的采样的权重(最新采样的权重为1，中间按采样时间线性变化)
+     */
+    static final double OLDEST_SAMPLE_WEIGHT = 0.5;
+
+    private final int mMaxPointers;
+    /**
+     * 所有触摸点的采样(第pointerId个触摸点占用[pointerId * HISTORY_SIZE, (pointerId + 1) * HISTORY_SIZE))
+     */
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mTime;
+    /**
+     * 每个触摸点最新采样在其环形缓冲区中的位置和采样数量
+     */
+    private final int[] mHead;
+    private final int[] mCount;
+    /**
+     * 最近一次{@link #computeCurrentVelocity(int, float)}的结果
+     */
+    private final float[] mVelocityX;
+    private final float[] mVelocityY;
+    /**
+     * 最近一次拟合得到的一次项和二次项系数(速度和加速度的一半，单位：像素每毫秒)
+     */
+    private double mFitVelocity;
+    private double mFitHalfAcceleration;
+
+    /**
+     * @param maxPointers 支持的触摸点标识的数量(标识的有效值范围[0, maxPointers))
+     */
+    VelocityEstimator(int maxPointers) {
+        if (maxPointers <= 0) {
+            throw new IllegalArgumentException("Pointer count must be greater than 0.");
+        }
+        mMaxPointers = maxPointers;
+        mX = new float[maxPointers * HISTORY_SIZE];
+        mY = new float[maxPointers * HISTORY_SIZE];
+        mTime = new long[maxPointers * HISTORY_SIZE];
+        mHead = new int[maxPointers];
+        mCount = new int[maxPointers];
+        mVelocityX = new float[maxPointers];
+        mVelocityY = new float[maxPointers];
+    }
+
+    /**
+     * 清空所有触摸点的采样和速度
+     */
+    void clear() {
+        for (int i = 0; i < mMaxPointers; i++) {
+            clear(i);
+        }
+    }
+
+    /**
+     * 清空指定触摸点的采样和速度
+     *
+     * @param pointerId 触摸点标识
+     */
+    void clear(int pointerId) {
+        if (pointerId < 0 || pointerId >= mMaxPointers) {
+            return;
+        }
+        mCount[pointerId] = 0;
+        mVelocityX[pointerId] = 0;
+        mVelocityY[pointerId] = 0;
+    }
+
+    /**
+     * 加入一个采样(采样时间必须递增，不晚于最新采样的重复采样会被忽略)
+     *
+     * @param pointerId  触摸点标识
+     * @param timeMillis 采样时间(单位：ms)
+     * @param x          X轴坐标
+     * @param y          Y轴坐标
+     */
+    void addMovement(int pointerId, long timeMillis, float x, float y) {
+        if (pointerId < 0 || pointerId >= mMaxPointers) {
+            return;
+        }
+        final int base = pointerId * HISTORY_SIZE;
+        int count = mCount[pointerId];
+        int head = mHead[pointerId];
+        if (count > 0) {
+            final long newest = mTime[base + head];
+            if (timeMillis <= newest) {
+                return;
+            }
+            if (timeMillis - newest > ASSUME_STOPPED_MILLIS) {
+                count = 0;
+            }
+        }
+        head = (head + 1) % HISTORY_SIZE;
+        mX[base + head] = x;
+        mY[base + head] = y;
+        mTime[base + head] = timeMillis;
+        mHead[pointerId] = head;
+        mCount[pointerId] = Math.min(count + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * 计算所有触摸点的当前速度
+     *
+     * @param units       速度的时间单位(1表示像素每毫秒，1000表示像素每秒)
+     * @param maxVelocity 速度的最大值(与units的单位相同)
+     */
+    void computeCurrentVelocity(int units, float maxVelocity) {
+        for (int i = 0; i < mMaxPointers; i++) {
+            if (mCount[i] == 0) {
+                mVelocityX[i] = 0;
+                mVelocityY[i] = 0;
+                continue;
+            }
+            mVelocityX[i] = clamp(fit(i, mX) ? (float) mFitVelocity * units : 0, maxVelocity);
+            mVelocityY[i] = clamp(fit(i, mY) ? (float) mFitVelocity * units : 0, maxVelocity);
+        }
+    }
+
+    /**
+     * 预测指定触摸点在最新采样之后经过指定时间时X轴坐标的变化量
+     *
+     * @param pointerId   触摸点标识
+     * @param aheadMillis 最新采样之后经过的时间(单位：ms)
+     * @return 相对最新采样的X轴坐标变化量(采样不足时为0)
+     */
+    float predictX(int pointerId, long aheadMillis) {
+        return predict(pointerId, mX, aheadMillis);
+    }
+
+    /**
+     * 预测指定触摸点在最新采样之后经过指定时间时Y轴坐标的变化量
+     *
+     * @param pointerId   触摸点标识
+     * @param aheadMillis 最新采样之后经过的时间(单位：ms)
+     * @return 相对最新采样的Y轴坐标变化量(采样不足时为0)
+     */
+    float predictY(int pointerId, long aheadMillis) {
+        return predict(pointerId, mY, aheadMillis);
+    }
+
+    private float predict(int pointerId, float[] positions, long aheadMillis) {
+        if (pointerId < 0 || pointerId >= mMaxPointers || mCount[pointerId] == 0 || !fit(pointerId, positions)) {
+            return 0;
+        }
+        // 拟合曲线从最新采样时刻开始的位移：b·t + c·t²
+        return (float) ((mFitVelocity + mFitHalfAcceleration * aheadMillis) * aheadMillis);
+    }
+
+    /**
+     * 返回指定触摸点最近一次计算出的X轴速度
+     *
+     * @param pointerId 触摸点标识
+     */
+    float getXVelocity(int pointerId) {
+        return pointerId >= 0 && pointerId < mMaxPointers ? mVelocityX[pointerId] : 0;
+    }
+
+    /**
+     * 返回指定触摸点最近一次计算出的Y轴速度
+     *
+     * @param pointerId 触摸点标识
+     */
+    float getYVelocity(int pointerId) {
+        return pointerId >= 0 && pointerId < mMaxPointers ? mVelocityY[pointerId] : 0;
+    }
+
+    /**
+     * 对一个坐标轴做加权最小二乘拟合，结果保存在{@link #mFitVelocity}和{@link #mFitHalfAcceleration}中
+     * <p>以最新采样时刻为原点拟合p(t) = a + b·t + c·t²，最新采样时刻的速度即为b；
+     * 采样的权重随采样时间从1线性减小到{@link #OLDEST_SAMPLE_WEIGHT}</p>
+     *
+     * @return 采样是否足够拟合
+     */
+    private boolean fit(int pointerId, float[] positions) {
+        mFitVelocity = 0;
+        mFitHalfAcceleration = 0;
+        final int base = pointerId * HISTORY_SIZE;
+        final int head = mHead[pointerId];
+        final long newestTime = mTime[base + head];
+        final float newestPosition = positions[base + head];
+
+        // 正规方程的各阶加权矩：Σw·t^k 和 Σw·p·t^k
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0;
+        double sp0 = 0, sp1 = 0, sp2 = 0;
+        int samples = 0;
+        for (int i = 0, count = mCount[pointerId]; i < count; i++) {
+            final int index = base + (head - i + HISTORY_SIZE) % HISTORY_SIZE;
+            final double t = mTime[index] - newestTime;
+            if (-t > HORIZON_MILLIS) {
+                break;
+            }
+            // 以最新采样为原点，减小浮点误差
+            final double p = positions[index] - newestPosition;
+            final double w = 1 + (1 - OLDEST_SAMPLE_WEIGHT) * t / HORIZON_MILLIS;
+            final double t2 = t * t;
+            s0 += w;
+            s1 += w * t;
+            s2 += w * t2;
+            s3 += w * t2 * t;
+            s4 += w * t2 * t2;
+            sp0 += w * p;
+            sp1 += w * p * t;
+            sp2 += w * p * t2;
+            samples++;
+        }
+        if (samples < 2) {
+            return false;
+        }
+        if (samples >= 3) {
+            // 克莱姆法则求解3x3正规方程中的b和c
+            final double det = s0 * (s2 * s4 - s3 * s3) - s1 * (s1 * s4 - s3 * s2) + s2 * (s1 * s3 - s2 * s2);
+            if (Math.abs(det) > 1e-9) {
+                final double detB = s0 * (sp1 * s4 - s3 * sp2) - sp0 * (s1 * s4 - s3 * s2) + s2 * (s1 * sp2 - sp1 * s2);
+                final double detC = s0 * (s2 * sp2 - sp1 * s3) - s1 * (s1 * sp2 - sp1 * s2) + sp0 * (s1 * s3 - s2 * s2);
+                mFitVelocity = detB / det;
+                mFitHalfAcceleration = detC / det;
+                return true;
+            }
+        }
+        // 一次拟合：b = (Σw·Σwpt - Σwt·Σwp) / (Σw·Σwt² - (Σwt)²)
+        final double denominator = s0 * s2 - s1 * s1;
+        if (Math.abs(denominator) < 1e-9) {
+            return false;
+        }
+        mFitVelocity = (s0 * sp1 - s1 * sp0) / denominator;
+        return true;
+    }
+
+    private static float clamp(float velocity, float maxVelocity) {
+        return Math.max(-maxVelocity, Math.min(velocity, maxVelocity));
+    }
+}
@@ -19,18 +19,16 @@ package com.henley.slidinguppanel;
 
 import android.content.Context;
 import android.support.v4.view.MotionEventCompat;
-import android.support.v4.view.VelocityTrackerCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v4.widget.ScrollerCompat;
+import android.view.Display;
 import android.view.MotionEvent;
-import android.view.VelocityTracker;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
 import android.view.animation.Interpolator;
 
-import java.util.Arrays;
-
 /**
  * ViewDragHelper is a utility class for writing custom ViewGroups. It offers a number
  * of useful operations and state tracking for allowing a user to drag and reposition
@@ -107,36 +105,59 @@ public class ViewDragHelper {
     private static final int BASE_SETTLE_DURATION = 256; // ms
     private static final int MAX_SETTLE_DURATION = 600; // ms
 
+    private static final int MAX_PREDICTION_DISTANCE = 24; // dp
+    private static final long MAX_PREDICTION_TIME = 20; // ms
+
     // Current drag state; idle, dragging or settling
     private int mDragState;
 
     // Distance to travel before a drag may begin
     private int mTouchSlop;
 
-    // Last known position/pointer tracking
+    // Pointer ids reported by MotionEvent are always in [0, MAX_POINTERS), which also
+    // matches the width of the mPointersDown bit mask.
+    private static final int MAX_POINTERS = 32;
+
+    // Last known position/pointer tracking. The table is allocated once; mDirtyPointers
+    // records which slots were written so that only those are reset between gestures.
     private int mActivePointerId = INVALID_POINTER;
-    private float[] mInitialMotionX;
-    private float[] mInitialMotionY;
-    private float[] mLastMotionX;
-    private float[] mLastMotionY;
-    private int[] mInitialEdgesTouched;
-    private int[] mEdgeDragsInProgress;
-    private int[] mEdgeDragsLocked;
+    private final float[] mInitialMotionX = new float[MAX_POINTERS];
+    private final float[] mInitialMotionY = new float[MAX_POINTERS];
+    private final float[] mLastMotionX = new float[MAX_POINTERS];
+    private final float[] mLastMotionY = new float[MAX_POINTERS];
+    private final int[] mInitialEdgesTouched = new int[MAX_POINTERS];
+    private final int[] mEdgeDragsInProgress = new int[MAX_POINTERS];
+    private final int[] mEdgeDragsLocked = new int[MAX_POINTERS];
     private int mPointersDown;
+    private int mDirtyPointers;
 
-    private VelocityTracker mVelocityTracker;
+    // Fed with every historical sample of each MotionEvent; allocated once
+    private final VelocityEstimator mVelocityEstimator = new VelocityEstimator(MAX_POINTERS);
     private float mMaxVelocity;
     private float mMinVelocity;
 
+    // Touch prediction: the captured view is dragged to where the active pointer is expected
+    // to be when the frame is presented. mPredictedDx/Dy is the part of the prediction that is
+    // actually applied on top of the real position after clamping; it is replaced when the
+    // next real sample arrives and taken back when the view is released.
+    private boolean mTouchPredictionEnabled;
+    private long mPredictionTime;
+    private final int mMaxPredictionDistance;
+    private int mPredictedDx;
+    private int mPredictedDy;
+
     private int mEdgeSize;
     private int mTrackingEdges;
 
-    private ScrollerCompat mScroller;
+    private SettleEngine mSettleEngine;
+    private final SettleEngine mDefaultSettleEngine;
 
     private final Callback mCallback;
 
     private View mCapturedView;
     private boolean mReleaseInProgress;
+    private float mReleaseXVelocity;
+    private float mReleaseYVelocity;
 
     private final ViewGroup mParentView;
 
@@ -325,10 +346,77 @@ public class ViewDragHelper {
         }
     }
 
+    /**
+     * A SettleEngine computes the motion of the captured view while it is settling as the result
+     * of {@link #smoothSlideViewTo(View, int, int)}, {@link #settleCapturedViewAt(int, int)} or
+     * {@link #flingCapturedView(int, int, int, int)}. Engines are stepped with the current
+     * animation time, so implementations that evaluate their motion as a function of time stay
+     * frame-rate independent and may be retargeted while running.
+     */
+    public static abstract class SettleEngine {
+        /**
+         * Start moving from (startX, startY) toward (finalX, finalY).
+         * If the engine is still running this call retargets the motion.
+         *
+         * @param startX     Current left position
+         * @param startY     Current top position
+         * @param finalX     Target left position
+         * @param finalY     Target top position
+         * @param xvel       Initial horizontal velocity in pixels per second
+         * @param yvel       Initial vertical velocity in pixels per second
+         * @param timeMillis Current animation time in milliseconds
+         */
+        public abstract void startSettle(int startX, int startY, int finalX, int finalY,
+                                         int xvel, int yvel, long timeMillis);
+
+        /**
+         * Start a free fling from (startX, startY) that stays within the given bounds.
+         *
+         * @param startX     Current left position
+         * @param startY     Current top position
+         * @param xvel       Initial horizontal velocity in pixels per second
+         * @param yvel       Initial vertical velocity in pixels per second
+         * @param minX       Minimum left position
+         * @param maxX       Maximum left position
+         * @param minY       Minimum top position
+         * @param maxY       Maximum top position
+         * @param timeMillis Current animation time in milliseconds
+         */
+        public abstract void startFling(int startX, int startY, int xvel, int yvel,
+                                        int minX, int maxX, int minY, int maxY, long timeMillis);
+
+        /**
+         * Advance the motion to the given time. Like {@link android.widget.Scroller#computeScrollOffset()}
+         * this returns true for the call that reaches the end of the motion and false afterwards.
+         *
+         * @param timeMillis Current animation time in milliseconds
+         * @return true if the position was updated
+         */
+        public abstract boolean computeOffset(long timeMillis);
+
+        public abstract int getCurrX();
+
+        public abstract int getCurrY();
+
+        public abstract int getFinalX();
+
+        public abstract int getFinalY();
+
+        /**
+         * @return true if the engine has come to rest
+         */
+        public abstract boolean isFinished();
+
+        /**
+         * Stop the motion and jump to the final position.
+         */
+        public abstract void abortAnimation();
+    }
+
     /**
      * Interpolator defining the animation curve for mScroller
      */
-    private static final Interpolator sInterpolator = new Interpolator() {
+    static final Interpolator sInterpolator = new Interpolator() {
         public float getInterpolation(float t) {
             t -= 1.0f;
             return t * t * t * t * t + 1.0f;
@@ -419,11 +507,42 @@ public class ViewDragHelper {
         final ViewConfiguration vc = ViewConfiguration.get(context);
         final float density = context.getResources().getDisplayMetrics().density;
         mEdgeSize = (int) (EDGE_SIZE * density + 0.5f);
+        mMaxPredictionDistance = (int) (MAX_PREDICTION_DISTANCE * density + 0.5f);
 
         mTouchSlop = vc.getScaledTouchSlop();
         mMaxVelocity = vc.getScaledMaximumFlingVelocity();
         mMinVelocity = vc.getScaledMinimumFlingVelocity();
-        mScroller = ScrollerCompat.create(context, interpolator != null ? interpolator : sInterpolator);
+        mDefaultSettleEngine = new ScrollerSettleEngine(
+                ScrollerCompat.create(context, interpolator != null ? interpolator : sInterpolator));
+        mSettleEngine = mDefaultSettleEngine;
+    }
+
+    /**
+     * Set the engine used to animate the captured view while settling. Passing null restores
+     * the default engine, which is driven by a duration heuristic.
+     *
+     * @param engine Engine to use, or null for the default engine
+     * @see SpringSettleEngine
+     * @see DecaySettleEngine
+     */
+    public void setSettleEngine(SettleEngine engine) {
+        if (engine == null) {
+            engine = mDefaultSettleEngine;
+        }
+        if (engine == mSettleEngine) {
+            return;
+        }
+        if (mDragState == STATE_SETTLING) {
+            abort();
+        }
+        mSettleEngine = engine;
+    }
+
+    /**
+     * @return The engine currently used to animate the captured view while settling
+     */
+    public SettleEngine getSettleEngine() {
+        return mSettleEngine;
     }
 
     /**
@@ -447,6 +566,27 @@ public class ViewDragHelper {
         return mMinVelocity;
     }
 
+    /**
+     * Enable or disable touch prediction. When enabled, a dragged view is positioned where
+     * the active pointer is expected to be when the frame is presented, extrapolated from the
+     * recent samples' velocity and acceleration over one display frame. The predicted position
+     * still goes through the callback's clamp methods, is limited to a short distance, and is
+     * replaced by the real position as soon as the next sample arrives.
+     *
+     * @param enabled true to enable touch prediction
+     */
+    public void setTouchPredictionEnabled(boolean enabled) {
+        mTouchPredictionEnabled = enabled;
+    }
+
+    /**
+     * @return true if touch prediction is enabled
+     * @see #setTouchPredictionEnabled(boolean)
+     */
+    public boolean isTouchPredictionEnabled() {
+        return mTouchPredictionEnabled;
+    }
+
     /**
      * Retrieve the current drag state of this helper. This will return one of
      * {@link #STATE_IDLE}, {@link #STATE_DRAGGING} or {@link #STATE_SETTLING}.
@@ -498,6 +638,13 @@ public class ViewDragHelper {
                     "of the ViewDragHelper's tracked parent view (" + mParentView + ")");
         }
 
+        if (mCapturedView == childView) {
+            // A different pointer takes over; the prediction belonged to the previous one
+            retractPrediction();
+        } else {
+            mPredictedDx = 0;
+            mPredictedDy = 0;
+        }
         mCapturedView = childView;
         mActivePointerId = activePointerId;
         mCallback.onViewCaptured(childView, activePointerId);
@@ -533,11 +680,10 @@ public class ViewDragHelper {
     public void cancel() {
         mActivePointerId = INVALID_POINTER;
         clearMotionHistory();
-
-        if (mVelocityTracker != null) {
-            mVelocityTracker.recycle();
-            mVelocityTracker = null;
-        }
+        mVelocityEstimator.clear();
+        mPredictedDx = 0;
+        mPredictedDy = 0;
+        mPredictionTime = 0;
     }
 
     /**
@@ -547,11 +693,11 @@ public class ViewDragHelper {
     public void abort() {
         cancel();
         if (mDragState == STATE_SETTLING) {
-            final int oldX = mScroller.getCurrX();
-            final int oldY = mScroller.getCurrY();
-            mScroller.abortAnimation();
-            final int newX = mScroller.getCurrX();
-            final int newY = mScroller.getCurrY();
+            final int oldX = mSettleEngine.getCurrX();
+            final int oldY = mSettleEngine.getCurrY();
+            mSettleEngine.abortAnimation();
+            final int newX = mSettleEngine.getCurrX();
+            final int newY = mSettleEngine.getCurrY();
             mCallback.onViewPositionChanged(mCapturedView, newX, newY, newX - oldX, newY - oldY);
         }
         setDragState(STATE_IDLE);
@@ -596,8 +742,7 @@ public class ViewDragHelper {
         }
 
         return forceSettleCapturedViewAt(finalLeft, finalTop,
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId));
+                (int) mReleaseXVelocity, (int) mReleaseYVelocity);
     }
 
     /**
@@ -617,19 +762,30 @@ public class ViewDragHelper {
 
         if (dx == 0 && dy == 0) {
             // Nothing to do. Send callbacks, be done.
-            mScroller.abortAnimation();
+            mSettleEngine.abortAnimation();
             setDragState(STATE_IDLE);
             return false;
         }
 
-        final int duration = computeSettleDuration(mCapturedView, dx, dy, xvel, yvel);
-        mScroller.startScroll(startLeft, startTop, dx, dy, duration);
+        mSettleEngine.startSettle(startLeft, startTop, finalLeft, finalTop, xvel, yvel,
+                AnimationUtils.currentAnimationTimeMillis());
 
         setDragState(STATE_SETTLING);
         return true;
     }
 
-    private int computeSettleDuration(View child, int dx, int dy, int xvel, int yvel) {
+    /**
+     * Compute the duration of a settle over the given distance, the same one the default
+     * scroller based engine uses.
+     *
+     * @param child View being settled
+     * @param dx    Horizontal distance to travel
+     * @param dy    Vertical distance to travel
+     * @param xvel  Horizontal velocity
+     * @param yvel  Vertical velocity
+     * @return Duration in milliseconds
+     */
+    int computeSettleDuration(View child, int dx, int dy, int xvel, int yvel) {
         xvel = clampMag(xvel, (int) mMinVelocity, (int) mMaxVelocity);
         yvel = clampMag(yvel, (int) mMinVelocity, (int) mMaxVelocity);
         final int absDx = Math.abs(dx);
@@ -728,10 +884,9 @@ public class ViewDragHelper {
                     "Callback#onViewReleased");
         }
 
-        mScroller.fling(mCapturedView.getLeft(), mCapturedView.getTop(),
-                (int) VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                (int) VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
-                minLeft, maxLeft, minTop, maxTop);
+        mSettleEngine.startFling(mCapturedView.getLeft(), mCapturedView.getTop(),
+                (int) mReleaseXVelocity, (int) mReleaseYVelocity,
+                minLeft, maxLeft, minTop, maxTop, AnimationUtils.currentAnimationTimeMillis());
 
         setDragState(STATE_SETTLING);
     }
@@ -748,14 +903,29 @@ public class ViewDragHelper {
      * @return true if settle is still in progress
      */
     public boolean continueSettling(boolean deferCallbacks) {
+        return continueSettling(deferCallbacks, AnimationUtils.currentAnimationTimeMillis());
+    }
+
+    /**
+     * Move the captured settling view to its position at the given frame time.
+     * This is intended for callers driving the settle from a
+     * {@link android.view.Choreographer.FrameCallback}, where the frame time is known.
+     *
+     * @param deferCallbacks  true if state callbacks should be deferred via posted message.
+     * @param frameTimeMillis Time of the frame being produced, in the
+     *                        {@link AnimationUtils#currentAnimationTimeMillis()} time base
+     * @return true if settle is still in progress
+     * @see #continueSettling(boolean)
+     */
+    public boolean continueSettling(boolean deferCallbacks, long frameTimeMillis) {
         // Make sure, there is a captured view
         if (mCapturedView == null) {
             return false;
         }
         if (mDragState == STATE_SETTLING) {
-            boolean keepGoing = mScroller.computeScrollOffset();
-            final int x = mScroller.getCurrX();
-            final int y = mScroller.getCurrY();
+            boolean keepGoing = mSettleEngine.computeOffset(frameTimeMillis);
+            final int x = mSettleEngine.getCurrX();
+            final int y = mSettleEngine.getCurrY();
             final int dx = x - mCapturedView.getLeft();
             final int dy = y - mCapturedView.getTop();
 
@@ -776,11 +946,11 @@ public class ViewDragHelper {
                 mCallback.onViewPositionChanged(mCapturedView, x, y, dx, dy);
             }
 
-            if (keepGoing && x == mScroller.getFinalX() && y == mScroller.getFinalY()) {
+            if (keepGoing && x == mSettleEngine.getFinalX() && y == mSettleEngine.getFinalY()) {
                 // Close enough. The interpolator/scroller might think we're still moving
                 // but the user sure doesn't.
-                mScroller.abortAnimation();
-                keepGoing = mScroller.isFinished();
+                mSettleEngine.abortAnimation();
+                keepGoing = mSettleEngine.isFinished();
             }
 
             if (!keepGoing) {
@@ -802,6 +972,7 @@ public class ViewDragHelper {
      * or {@link #flingCapturedView(int, int, int, int)}.
      */
     private void dispatchViewReleased(float xvel, float yvel) {
+        retractPrediction();
         mReleaseInProgress = true;
         mCallback.onViewReleased(mCapturedView, xvel, yvel);
         mReleaseInProgress = false;
@@ -813,23 +984,26 @@ public class ViewDragHelper {
     }
 
     private void clearMotionHistory() {
-        if (mInitialMotionX == null) {
-            return;
+        int dirty = mDirtyPointers;
+        while (dirty != 0) {
+            final int pointerId = Integer.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+            resetPointer(pointerId);
         }
-        Arrays.fill(mInitialMotionX, 0);
-        Arrays.fill(mInitialMotionY, 0);
-        Arrays.fill(mLastMotionX, 0);
-        Arrays.fill(mLastMotionY, 0);
-        Arrays.fill(mInitialEdgesTouched, 0);
-        Arrays.fill(mEdgeDragsInProgress, 0);
-        Arrays.fill(mEdgeDragsLocked, 0);
+        mDirtyPointers = 0;
         mPointersDown = 0;
     }
 
     private void clearMotionHistory(int pointerId) {
-        if (mInitialMotionX == null || mInitialMotionX.length <= pointerId) {
+        if (!isValidPointerId(pointerId)) {
             return;
         }
+        resetPointer(pointerId);
+        mDirtyPointers &= ~(1 << pointerId);
+        mPointersDown &= ~(1 << pointerId);
+    }
+
+    private void resetPointer(int pointerId) {
         mInitialMotionX[pointerId] = 0;
         mInitialMotionY[pointerId] = 0;
         mLastMotionX[pointerId] = 0;
@@ -837,45 +1011,21 @@ public class ViewDragHelper {
         mInitialEdgesTouched[pointerId] = 0;
         mEdgeDragsInProgress[pointerId] = 0;
         mEdgeDragsLocked[pointerId] = 0;
-        mPointersDown &= ~(1 << pointerId);
     }
 
-    private void ensureMotionHistorySizeForId(int pointerId) {
-        if (mInitialMotionX == null || mInitialMotionX.length <= pointerId) {
-            float[] imx = new float[pointerId + 1];
-            float[] imy = new float[pointerId + 1];
-            float[] lmx = new float[pointerId + 1];
-            float[] lmy = new float[pointerId + 1];
-            int[] iit = new int[pointerId + 1];
-            int[] edip = new int[pointerId + 1];
-            int[] edl = new int[pointerId + 1];
-
-            if (mInitialMotionX != null) {
-                System.arraycopy(mInitialMotionX, 0, imx, 0, mInitialMotionX.length);
-                System.arraycopy(mInitialMotionY, 0, imy, 0, mInitialMotionY.length);
-                System.arraycopy(mLastMotionX, 0, lmx, 0, mLastMotionX.length);
-                System.arraycopy(mLastMotionY, 0, lmy, 0, mLastMotionY.length);
-                System.arraycopy(mInitialEdgesTouched, 0, iit, 0, mInitialEdgesTouched.length);
-                System.arraycopy(mEdgeDragsInProgress, 0, edip, 0, mEdgeDragsInProgress.length);
-                System.arraycopy(mEdgeDragsLocked, 0, edl, 0, mEdgeDragsLocked.length);
-            }
-
-            mInitialMotionX = imx;
-            mInitialMotionY = imy;
-            mLastMotionX = lmx;
-            mLastMotionY = lmy;
-            mInitialEdgesTouched = iit;
-            mEdgeDragsInProgress = edip;
-            mEdgeDragsLocked = edl;
-        }
+    private static boolean isValidPointerId(int pointerId) {
+        return pointerId >= 0 && pointerId < MAX_POINTERS;
     }
 
     private void saveInitialMotion(float x, float y, int pointerId) {
-        ensureMotionHistorySizeForId(pointerId);
+        if (!isValidPointerId(pointerId)) {
+            return;
+        }
         mInitialMotionX[pointerId] = mLastMotionX[pointerId] = x;
         mInitialMotionY[pointerId] = mLastMotionY[pointerId] = y;
         mInitialEdgesTouched[pointerId] = getEdgesTouched((int) x, (int) y);
         mPointersDown |= 1 << pointerId;
+        mDirtyPointers |= 1 << pointerId;
     }
 
     private void saveLastMotion(MotionEvent ev) {
@@ -884,15 +1034,47 @@ public class ViewDragHelper {
             final int pointerId = MotionEventCompat.getPointerId(ev, i);
             final float x = MotionEventCompat.getX(ev, i);
             final float y = MotionEventCompat.getY(ev, i);
-            // Sometimes we can try and save last motion for a pointer never recorded in initial motion. In this case we just discard it.
-            if (mLastMotionX != null && mLastMotionY != null
-                    && mLastMotionX.length > pointerId && mLastMotionY.length > pointerId) {
+            if (isValidPointerId(pointerId)) {
                 mLastMotionX[pointerId] = x;
                 mLastMotionY[pointerId] = y;
+                mDirtyPointers |= 1 << pointerId;
             }
         }
     }
 
+    /**
+     * Feed the velocity estimator with every sample of the event, including the historical
+     * samples batched into a single ACTION_MOVE, so fast flings are not estimated from
+     * the last sample of each frame only.
+     */
+    private void addMovement(MotionEvent ev) {
+        final int action = MotionEventCompat.getActionMasked(ev);
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mVelocityEstimator.clear();
+                break;
+            case MotionEventCompat.ACTION_POINTER_DOWN:
+                mVelocityEstimator.clear(MotionEventCompat.getPointerId(ev,
+                        MotionEventCompat.getActionIndex(ev)));
+                break;
+            case MotionEvent.ACTION_MOVE:
+                break;
+            default:
+                // Up and cancel carry the release position only, which would skew the fit
+                return;
+        }
+        final int pointerCount = MotionEventCompat.getPointerCount(ev);
+        final int historySize = ev.getHistorySize();
+        for (int i = 0; i < pointerCount; i++) {
+            final int pointerId = MotionEventCompat.getPointerId(ev, i);
+            for (int h = 0; h < historySize; h++) {
+                mVelocityEstimator.addMovement(pointerId, ev.getHistoricalEventTime(h),
+                        ev.getHistoricalX(i, h), ev.getHistoricalY(i, h));
+            }
+            mVelocityEstimator.addMovement(pointerId, ev.getEventTime(), ev.getX(i), ev.getY(i));
+        }
+    }
+
     /**
      * Check if the given pointer ID represents a pointer that is currently down (to the best
      * of the ViewDragHelper's knowledge).
@@ -907,7 +1089,7 @@ public class ViewDragHelper {
      * @return true if the pointer with the given ID is still down
      */
     public boolean isPointerDown(int pointerId) {
-        return (mPointersDown & 1 << pointerId) != 0;
+        return isValidPointerId(pointerId) && (mPointersDown & 1 << pointerId) != 0;
     }
 
     void setDragState(int state) {
@@ -995,10 +1177,7 @@ public class ViewDragHelper {
             cancel();
         }
 
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        }
-        mVelocityTracker.addMovement(ev);
+        addMovement(ev);
 
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
@@ -1047,9 +1226,9 @@ public class ViewDragHelper {
             case MotionEvent.ACTION_MOVE: {
                 // First to cross a touch slop over a draggable view wins. Also report edge drags.
                 final int pointerCount = MotionEventCompat.getPointerCount(ev);
-                for (int i = 0; i < pointerCount && mInitialMotionX != null && mInitialMotionY != null; i++) {
+                for (int i = 0; i < pointerCount; i++) {
                     final int pointerId = MotionEventCompat.getPointerId(ev, i);
-                    if (pointerId >= mInitialMotionX.length || pointerId >= mInitialMotionY.length) {
+                    if (!isValidPointerId(pointerId)) {
                         continue;
                     }
                     final float x = MotionEventCompat.getX(ev, i);
@@ -1105,10 +1284,7 @@ public class ViewDragHelper {
             cancel();
         }
 
-        if (mVelocityTracker == null) {
-            mVelocityTracker = VelocityTracker.obtain();
-        }
-        mVelocityTracker.addMovement(ev);
+        addMovement(ev);
 
         switch (action) {
             case MotionEvent.ACTION_DOWN: {
@@ -1167,7 +1343,11 @@ public class ViewDragHelper {
                     final int idx = (int) (x - mLastMotionX[mActivePointerId]);
                     final int idy = (int) (y - mLastMotionY[mActivePointerId]);
 
-                    dragTo(mCapturedView.getLeft() + idx, mCapturedView.getTop() + idy, idx, idy);
+                    if (mTouchPredictionEnabled) {
+                        dragToPredicted(idx, idy);
+                    } else {
+                        dragTo(mCapturedView.getLeft() + idx, mCapturedView.getTop() + idy, idx, idy);
+                    }
 
                     saveLastMotion(ev);
                 } else {
@@ -1175,6 +1355,9 @@ public class ViewDragHelper {
                     final int pointerCount = MotionEventCompat.getPointerCount(ev);
                     for (int i = 0; i < pointerCount; i++) {
                         final int pointerId = MotionEventCompat.getPointerId(ev, i);
+                        if (!isValidPointerId(pointerId)) {
+                            continue;
+                        }
                         final float x = MotionEventCompat.getX(ev, i);
                         final float y = MotionEventCompat.getY(ev, i);
                         final float dx = x - mInitialMotionX[pointerId];
@@ -1238,6 +1421,8 @@ public class ViewDragHelper {
 
             case MotionEvent.ACTION_CANCEL: {
                 if (mDragState == STATE_DRAGGING) {
+                    mReleaseXVelocity = mVelocityEstimator.getXVelocity(mActivePointerId);
+                    mReleaseYVelocity = mVelocityEstimator.getYVelocity(mActivePointerId);
                     dispatchViewReleased(0, 0);
                 }
                 cancel();
@@ -1326,9 +1511,11 @@ public class ViewDragHelper {
      * @return true if the slop threshold has been crossed, false otherwise
      */
     public boolean checkTouchSlop(int directions) {
-        final int count = mInitialMotionX.length;
-        for (int i = 0; i < count; i++) {
-            if (checkTouchSlop(directions, i)) {
+        int down = mPointersDown;
+        while (down != 0) {
+            final int pointerId = Integer.numberOfTrailingZeros(down);
+            down &= down - 1;
+            if (checkTouchSlop(directions, pointerId)) {
                 return true;
             }
         }
@@ -1381,9 +1568,11 @@ public class ViewDragHelper {
      * @return true if any of the edges specified were initially touched in the current gesture
      */
     public boolean isEdgeTouched(int edges) {
-        final int count = mInitialEdgesTouched.length;
-        for (int i = 0; i < count; i++) {
-            if (isEdgeTouched(edges, i)) {
+        int down = mPointersDown;
+        while (down != 0) {
+            final int pointerId = Integer.numberOfTrailingZeros(down);
+            down &= down - 1;
+            if (isEdgeTouched(edges, pointerId)) {
                 return true;
             }
         }
@@ -1408,17 +1597,110 @@ public class ViewDragHelper {
         return mDragState == STATE_DRAGGING;
     }
 
+    /**
+     * Move the captured view by the given delta without a touch event, e.g. when the
+     * drag is driven by nested scrolling. The movement is clamped by the callback exactly
+     * like a touch drag. This has no effect unless the helper is in {@link #STATE_DRAGGING}.
+     *
+     * @param dx Horizontal delta in pixels
+     * @param dy Vertical delta in pixels
+     */
+    public void dragCapturedViewBy(int dx, int dy) {
+        if (mDragState != STATE_DRAGGING || mCapturedView == null) {
+            return;
+        }
+        dragTo(mCapturedView.getLeft() + dx, mCapturedView.getTop() + dy, dx, dy);
+    }
+
+    /**
+     * Release the captured view with the given velocity without a touch event, e.g. when
+     * the drag is driven by nested scrolling. {@link Callback#onViewReleased(View, float, float)}
+     * is invoked and may settle or fling the view using the given velocity.
+     * This has no effect unless the helper is in {@link #STATE_DRAGGING}.
+     *
+     * @param xvel Horizontal velocity in pixels per second
+     * @param yvel Vertical velocity in pixels per second
+     */
+    public void releaseCapturedView(float xvel, float yvel) {
+        if (mDragState != STATE_DRAGGING || mCapturedView == null) {
+            return;
+        }
+        mReleaseXVelocity = xvel;
+        mReleaseYVelocity = yvel;
+        dispatchViewReleased(xvel, yvel);
+    }
+
     private void releaseViewForPointerUp() {
-        mVelocityTracker.computeCurrentVelocity(1000, mMaxVelocity);
-        final float xvel = clampMag(
-                VelocityTrackerCompat.getXVelocity(mVelocityTracker, mActivePointerId),
-                mMinVelocity, mMaxVelocity);
-        final float yvel = clampMag(
-                VelocityTrackerCompat.getYVelocity(mVelocityTracker, mActivePointerId),
-                mMinVelocity, mMaxVelocity);
+        mVelocityEstimator.computeCurrentVelocity(1000, mMaxVelocity);
+        mReleaseXVelocity = mVelocityEstimator.getXVelocity(mActivePointerId);
+        mReleaseYVelocity = mVelocityEstimator.getYVelocity(mActivePointerId);
+        final float xvel = clampMag(mReleaseXVelocity, mMinVelocity, mMaxVelocity);
+        final float yvel = clampMag(mReleaseYVelocity, mMinVelocity, mMaxVelocity);
         dispatchViewReleased(xvel, yvel);
     }
 
+    /**
+     * Drag the captured view by the real pointer delta plus a fresh prediction, replacing the
+     * previous prediction. Only the part of the prediction that survived the clamp callbacks
+     * is remembered, so a prediction pinned at a bound is never taken back later.
+     */
+    private void dragToPredicted(int idx, int idy) {
+        // Where the view would be without any prediction
+        final int left = mCapturedView.getLeft() - mPredictedDx + idx;
+        final int top = mCapturedView.getTop() - mPredictedDy + idy;
+        final long predictionTime = getPredictionTime();
+        final int predictedDx = constrain(
+                mVelocityEstimator.predictX(mActivePointerId, predictionTime), mMaxPredictionDistance);
+        final int predictedDy = constrain(
+                mVelocityEstimator.predictY(mActivePointerId, predictionTime), mMaxPredictionDistance);
+        final int dx = left + predictedDx - mCapturedView.getLeft();
+        final int dy = top + predictedDy - mCapturedView.getTop();
+        dragTo(left + predictedDx, top + predictedDy, dx, dy);
+        // A clamp that also pinned the real position is not part of the prediction
+        mPredictedDx = clampTowards(mCapturedView.getLeft() - left, predictedDx);
+        mPredictedDy = clampTowards(mCapturedView.getTop() - top, predictedDy);
+    }
+
+    /**
+     * Move the captured view back by the prediction applied on top of the real pointer
+     * position, so that a release or a pointer switch starts from where the finger is.
+     */
+    private void retractPrediction() {
+        final int dx = -mPredictedDx;
+        final int dy = -mPredictedDy;
+        mPredictedDx = 0;
+        mPredictedDy = 0;
+        if ((dx != 0 || dy != 0) && mCapturedView != null) {
+            dragTo(mCapturedView.getLeft() + dx, mCapturedView.getTop() + dy, dx, dy);
+        }
+    }
+
+    /**
+     * @return How far ahead of the latest sample to predict: one frame of the parent's display,
+     * looked up once per gesture since the refresh rate may change between gestures
+     */
+    private long getPredictionTime() {
+        if (mPredictionTime == 0) {
+            final Display display = ViewCompat.getDisplay(mParentView);
+            final float refreshRate = display != null ? display.getRefreshRate() : 0;
+            mPredictionTime = refreshRate >= 1
+                    ? Math.min(Math.round(1000 / refreshRate), MAX_PREDICTION_TIME)
+                    : MAX_PREDICTION_TIME;
+        }
+        return mPredictionTime;
+    }
+
+    private static int constrain(float value, int absMax) {
+        return (int) Math.max(-absMax, Math.min(value, absMax));
+    }
+
+    /**
+     * Clamp value to the range between 0 and bound, where bound may be negative.
+     */
+    private static int clampTowards(int value, int bound) {
+        return bound >= 0 ? Math.max(0, Math.min(value, bound)) : Math.min(0, Math.max(value, bound));
+    }
+
     private void dragTo(int left, int top, int dx, int dy) {
         int clampedX = left;
         int clampedY = top;
@@ -1493,6 +1775,68 @@ public class ViewDragHelper {
         return null;
     }
 
+    /**
+     * Default engine. Settles along a {@link ScrollerCompat} whose duration is derived from
+     * the distance, the release velocity and the drag range of the captured view.
+     */
+    private class ScrollerSettleEngine extends SettleEngine {
+        private final ScrollerCompat mScroller;
+
+        ScrollerSettleEngine(ScrollerCompat scroller) {
+            mScroller = scroller;
+        }
+
+        @Override
+        public void startSettle(int startX, int startY, int finalX, int finalY,
+                                int xvel, int yvel, long timeMillis) {
+            final int dx = finalX - startX;
+            final int dy = finalY - startY;
+            final int duration = computeSettleDuration(mCapturedView, dx, dy, xvel, yvel);
+            mScroller.startScroll(startX, startY, dx, dy, duration);
+        }
+
+        @Override
+        public void startFling(int startX, int startY, int xvel, int yvel,
+                               int minX, int maxX, int minY, int maxY, long timeMillis) {
+            mScroller.fling(startX, startY, xvel, yvel, minX, maxX, minY, maxY);
+        }
+
+        @Override
+        public boolean computeOffset(long timeMillis) {
+            return mScroller.computeScrollOffset();
+        }
+
+        @Override
+        public int getCurrX() {
+            return mScroller.getCurrX();
+        }
+
+        @Override
+        public int getCurrY() {
+            return mScroller.getCurrY();
+        }
+
+        @Override
+        public int getFinalX() {
+            return mScroller.getFinalX();
+        }
+
+        @Override
+        public int getFinalY() {
+            return mScroller.getFinalY();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return mScroller.isFinished();
+        }
+
+        @Override
+        public void abortAnimation() {
+            mScroller.abortAnimation();
+        }
+    }
+
     private int getEdgesTouched(int x, int y) {
         int result = 0;
 
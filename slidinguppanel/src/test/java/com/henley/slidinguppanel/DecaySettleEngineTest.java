@@ -0,0 +1,76 @@
+package com.henley.slidinguppanel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link DecaySettleEngine}的单元测试
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class DecaySettleEngineTest {
+
+    /**
+     * 帧间隔(单位：ms)
+     */
+    private static final long FRAME_MILLIS = 8;
+    private static final long MAX_DURATION_MILLIS = 5000;
+
+    @Test
+    public void clampedTimeConstantKeepsReleaseVelocity() {
+        // 1000px、1000px/s求出的时间常数为1s，超出上限；初速度仍然应该是1000px/s而不是distance/τ
+        final DecaySettleEngine engine = new DecaySettleEngine();
+        engine.startSettle(0, 0, 0, 1000, 0, 1000, 0);
+        engine.computeOffset(10);
+
+        assertEquals(10, engine.getCurrY(), 1);
+    }
+
+    @Test
+    public void retargetKeepsCurrentVelocity() {
+        // 1000px、5000px/s：时间常数为0.2s，40ms时的速度为5000·e^(-0.2)
+        final DecaySettleEngine engine = new DecaySettleEngine();
+        engine.startSettle(0, 0, 0, 1000, 0, 5000, 0);
+        engine.computeOffset(40);
+        final float velocity = (float) (5000 * Math.exp(-0.2));
+
+        // 沿原方向重新指定更远的目标，之后一小段时间内的位移与之前的速度一致
+        final int start = engine.getCurrY();
+        engine.startSettle(0, start, 0, 3000, 0, 0, 0);
+        engine.computeOffset(10);
+        assertEquals(velocity * 10 / 1000f, engine.getCurrY() - start, 2);
+    }
+
+    @Test
+    public void settleNeverCrossesTarget() {
+        assertNeverCrosses(0, 100, 6000);
+        assertNeverCrosses(0, 300, 24000);
+        assertNeverCrosses(300, 0, -24000);
+        assertNeverCrosses(0, 500, 0);
+    }
+
+    @Test
+    public void reversedVelocityStillReachesTarget() {
+        assertNeverCrosses(0, 500, -3000);
+    }
+
+    /**
+     * 逐帧推进停靠动画，检查位置始终在起点和目标之间并最终停在目标
+     */
+    private static void assertNeverCrosses(int start, int target, int velocity) {
+        final DecaySettleEngine engine = new DecaySettleEngine();
+        engine.startSettle(0, start, 0, target, 0, velocity, 0);
+        final int min = Math.min(start, target);
+        final int max = Math.max(start, target);
+        for (long time = FRAME_MILLIS; time <= MAX_DURATION_MILLIS && !engine.isFinished(); time += FRAME_MILLIS) {
+            engine.computeOffset(time);
+            final int current = engine.getCurrY();
+            assertTrue("Position " + current + " left [" + min + ", " + max + "]", current >= min && current <= max);
+        }
+        assertTrue(engine.isFinished());
+        assertEquals(target, engine.getCurrY());
+    }
+}
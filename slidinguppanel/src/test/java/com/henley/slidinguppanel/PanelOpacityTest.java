@@ -0,0 +1,67 @@
+package com.henley.slidinguppanel;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 滑动面板不透明判断的单元测试(面板背景颜色在背景对象不变的情况下改变)
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PanelOpacityTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    private SlidingUpPanelLayout mLayout;
+    private View mPanel;
+
+    @Before
+    public void setUp() {
+        final Context context = RuntimeEnvironment.application;
+        mLayout = new SlidingUpPanelLayout(context);
+        mPanel = new View(context);
+        mPanel.setBackgroundColor(0xffffffff);
+        mLayout.addView(new View(context), new SlidingUpPanelLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.addView(mPanel, new SlidingUpPanelLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        mLayout.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+        mLayout.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void colorBindingToTranslucentMakesPanelSeeThrough() {
+        final OffsetBinding binding = mLayout.addColorBinding(mPanel, 0f, 1f, 0xffffffff, 0x00ffffff, null);
+        binding.apply(0f);
+        assertTrue(mLayout.isPanelDrawnOpaque());
+
+        // 拖动过程中背景颜色变为半透明：同一个ColorDrawable对象被修改
+        binding.apply(0.5f);
+        assertFalse(mLayout.isPanelDrawnOpaque());
+
+        binding.apply(0f);
+        assertTrue(mLayout.isPanelDrawnOpaque());
+    }
+
+    @Test
+    public void translucentBackgroundColorIsSeeThrough() {
+        assertTrue(mLayout.isPanelDrawnOpaque());
+        mPanel.setBackgroundColor(0x80ffffff);
+        assertFalse(mLayout.isPanelDrawnOpaque());
+    }
+}
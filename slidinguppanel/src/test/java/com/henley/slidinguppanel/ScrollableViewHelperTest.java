@@ -0,0 +1,74 @@
+package com.henley.slidinguppanel;
+
+import android.content.Context;
+import android.support.v4.view.ViewPager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.ScrollView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ScrollableViewHelper}的单元测试(只有垂直滚动的视图才是滚动视图)
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ScrollableViewHelperTest {
+
+    private Context mContext;
+    private ScrollableViewHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mHelper = new ScrollableViewHelper();
+    }
+
+    @Test
+    public void verticalRecyclerViewIsScrollable() {
+        final RecyclerView recyclerView = new RecyclerView(mContext);
+        recyclerView.setLayoutManager(new LinearLayoutManager(mContext, LinearLayoutManager.VERTICAL, false));
+
+        assertTrue(mHelper.isScrollableView(recyclerView));
+    }
+
+    @Test
+    public void horizontalRecyclerViewIsNotScrollable() {
+        final RecyclerView recyclerView = new RecyclerView(mContext);
+        recyclerView.setLayoutManager(new LinearLayoutManager(mContext, LinearLayoutManager.HORIZONTAL, false));
+
+        assertFalse(mHelper.isScrollableView(recyclerView));
+        // 即使被指定为滚动视图，水平列表也不会阻止面板处理垂直滑动
+        assertEquals(0, mHelper.getScrollableViewScrollPosition(recyclerView, true));
+        assertEquals(0, mHelper.getScrollableViewScrollPosition(recyclerView, false));
+    }
+
+    @Test
+    public void recyclerViewWithoutLayoutManagerIsNotScrollable() {
+        assertFalse(mHelper.isScrollableView(new RecyclerView(mContext)));
+    }
+
+    @Test
+    public void viewPagerIsNotScrollable() {
+        assertFalse(mHelper.isScrollableView(new ViewPager(mContext)));
+    }
+
+    @Test
+    public void verticalScrollingViewsAreScrollable() {
+        assertTrue(mHelper.isScrollableView(new ScrollView(mContext)));
+        assertTrue(mHelper.isScrollableView(new ListView(mContext)));
+        assertFalse(mHelper.isScrollableView(new View(mContext)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.henley.slidinguppanel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link SnapPointSet}的单元测试
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class SnapPointSetTest {
+
+    private static final int SLIDE_RANGE = 1000;
+
+    @Test
+    public void putKeepsPositionsAligned() {
+        final SnapPointSet snapPoints = newSnapPoints();
+        // 插入到中间，不重新计算像素位置
+        snapPoints.put(2, 0.25f);
+
+        assertEquals(4, snapPoints.size());
+        assertEquals(1, snapPoints.indexOfPosition(250));
+        assertEquals(2, snapPoints.indexOfPosition(500));
+        assertEquals(3, snapPoints.indexOfPosition(1000));
+        assertEquals(2, snapPoints.ceilIndex(300));
+        assertEquals(1, snapPoints.floorIndex(300));
+    }
+
+    @Test
+    public void removeKeepsPositionsAligned() {
+        final SnapPointSet snapPoints = newSnapPoints();
+        snapPoints.remove(1);
+
+        assertEquals(2, snapPoints.size());
+        assertEquals(-1, snapPoints.indexOfPosition(500));
+        assertEquals(1, snapPoints.indexOfPosition(1000));
+        assertEquals(1, snapPoints.ceilIndex(1));
+        assertEquals(0, snapPoints.nearestIndex(499));
+    }
+
+    @Test
+    public void replaceMovesSnapPoint() {
+        final SnapPointSet snapPoints = newSnapPoints();
+        snapPoints.put(1, 0.75f);
+
+        assertEquals(-1, snapPoints.indexOfPosition(500));
+        assertEquals(1, snapPoints.indexOfPosition(750));
+        assertEquals(1, snapPoints.getId(snapPoints.nearestIndex(700)));
+    }
+
+    @Test
+    public void nearestIndexPrefersLargerPositionOnTie() {
+        final SnapPointSet snapPoints = newSnapPoints();
+
+        assertEquals(0, snapPoints.nearestIndex(249));
+        assertEquals(1, snapPoints.nearestIndex(250));
+        assertEquals(2, snapPoints.nearestIndex(750));
+        assertEquals(2, snapPoints.nearestIndex(5000));
+        assertEquals(0, snapPoints.nearestIndex(-5000));
+    }
+
+    /**
+     * 折叠(0)、中间(0.5)和展开(1)三个停靠点
+     */
+    private static SnapPointSet newSnapPoints() {
+        final SnapPointSet snapPoints = new SnapPointSet();
+        snapPoints.put(0, 0.0f);
+        snapPoints.put(3, 1.0f);
+        snapPoints.put(1, 0.5f);
+        snapPoints.computePositions(SLIDE_RANGE);
+        return snapPoints;
+    }
+}
@@ -0,0 +1,122 @@
+package com.henley.slidinguppanel;
+
+import android.view.View;
+
+import com.henley.slidinguppanel.SlidingUpPanelLayout.PanelSlideListener;
+import com.henley.slidinguppanel.SlidingUpPanelLayout.PanelState;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SnapshotArray}的单元测试(监听器按快照分发)
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class SnapshotArrayTest {
+
+    private static final int LISTENER_COUNT = 8;
+    private static final int DISPATCH_COUNT = 100000;
+
+    @Test
+    public void snapshotIsReusedUntilModified() {
+        final SnapshotArray<PanelSlideListener> listeners = newListeners();
+        final PanelSlideListener[] snapshot = listeners.get();
+        for (int i = 0; i < DISPATCH_COUNT; i++) {
+            SlidingUpPanelLayout.dispatchOnPanelSlide(listeners, null, 0.5f);
+            assertSame(snapshot, listeners.get());
+        }
+        for (PanelSlideListener listener : snapshot) {
+            assertEquals(DISPATCH_COUNT, ((CountingListener) listener).slideCount);
+        }
+    }
+
+    @Test
+    public void listenersChangedDuringDispatchTakeEffectNextTime() {
+        final SnapshotArray<PanelSlideListener> listeners = new SnapshotArray<>(new PanelSlideListener[0]);
+        final CountingListener removed = new CountingListener();
+        final CountingListener added = new CountingListener();
+        // 第一个监听在第一次回调中移除第二个监听并添加新的监听
+        listeners.add(new CountingListener() {
+            @Override
+            public void onPanelSlide(View panel, float slideOffset) {
+                super.onPanelSlide(panel, slideOffset);
+                if (slideCount == 1) {
+                    listeners.remove(removed);
+                    listeners.add(added);
+                }
+            }
+        });
+        listeners.add(removed);
+
+        SlidingUpPanelLayout.dispatchOnPanelSlide(listeners, null, 0.5f);
+        assertEquals(1, removed.slideCount);
+        assertEquals(0, added.slideCount);
+
+        SlidingUpPanelLayout.dispatchOnPanelSlide(listeners, null, 0.6f);
+        assertEquals(1, removed.slideCount);
+        assertEquals(1, added.slideCount);
+    }
+
+    @Test
+    public void modificationDoesNotAffectTakenSnapshot() {
+        final SnapshotArray<PanelSlideListener> listeners = newListeners();
+        final PanelSlideListener[] snapshot = listeners.get();
+        final PanelSlideListener first = snapshot[0];
+        final PanelSlideListener added = new CountingListener();
+
+        listeners.add(added);
+        assertTrue(listeners.remove(first));
+        assertEquals(LISTENER_COUNT, snapshot.length);
+        assertSame(first, snapshot[0]);
+        assertEquals(LISTENER_COUNT, listeners.get().length);
+        assertSame(snapshot[1], listeners.get()[0]);
+        assertSame(added, listeners.get()[LISTENER_COUNT - 1]);
+    }
+
+    @Test
+    public void removeKeepsOrder() {
+        final SnapshotArray<PanelSlideListener> listeners = newListeners();
+        final PanelSlideListener[] snapshot = listeners.get();
+
+        assertTrue(listeners.remove(snapshot[3]));
+        assertFalse(listeners.remove(snapshot[3]));
+        final PanelSlideListener[] expected = new PanelSlideListener[LISTENER_COUNT - 1];
+        System.arraycopy(snapshot, 0, expected, 0, 3);
+        System.arraycopy(snapshot, 4, expected, 3, LISTENER_COUNT - 4);
+        assertArrayEquals(expected, listeners.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonEmptyInitialArray() {
+        new SnapshotArray<>(new PanelSlideListener[]{new CountingListener()});
+    }
+
+    private static SnapshotArray<PanelSlideListener> newListeners() {
+        final SnapshotArray<PanelSlideListener> listeners = new SnapshotArray<>(new PanelSlideListener[0]);
+        for (int i = 0; i < LISTENER_COUNT; i++) {
+            listeners.add(new CountingListener());
+        }
+        return listeners;
+    }
+
+    private static class CountingListener implements PanelSlideListener {
+
+        int slideCount;
+
+        @Override
+        public void onPanelSlide(View panel, float slideOffset) {
+            slideCount++;
+        }
+
+        @Override
+        public void onPanelStateChanged(View panel, PanelState previousState, PanelState newState) {
+        }
+    }
+}
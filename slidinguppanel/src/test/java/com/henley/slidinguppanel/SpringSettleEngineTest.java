@@ -0,0 +1,70 @@
+package com.henley.slidinguppanel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SpringSettleEngine}的单元测试
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class SpringSettleEngineTest {
+
+    /**
+     * 帧间隔(单位：ms)
+     */
+    private static final long FRAME_MILLIS = 8;
+    private static final long MAX_DURATION_MILLIS = 5000;
+
+    @Test
+    public void hardFlingTowardTargetDoesNotCrossIt() {
+        // 剩余100px、6000px/s：不限制时会越过目标约27px
+        assertNeverCrosses(0, 100, 6000);
+        // 剩余300px、24000px/s：不限制时会越过目标约160px
+        assertNeverCrosses(0, 300, 24000);
+        // 反方向
+        assertNeverCrosses(300, 0, -24000);
+    }
+
+    @Test
+    public void slowSettleReachesTarget() {
+        assertNeverCrosses(0, 500, 0);
+        assertNeverCrosses(500, 0, -100);
+    }
+
+    @Test
+    public void velocityAwayFromTargetStaysWithinSpan() {
+        assertNeverCrosses(100, 400, -8000);
+    }
+
+    @Test
+    public void startingAtTargetFinishesImmediately() {
+        final SpringSettleEngine engine = new SpringSettleEngine();
+        engine.startSettle(0, 200, 0, 200, 0, 0, 0);
+
+        assertTrue(engine.isFinished());
+        assertEquals(200, engine.getCurrY());
+    }
+
+    /**
+     * 逐帧推进停靠动画，检查位置始终在起点和目标之间并最终停在目标
+     */
+    private static void assertNeverCrosses(int start, int target, int velocity) {
+        final SpringSettleEngine engine = new SpringSettleEngine();
+        engine.startSettle(0, start, 0, target, 0, velocity, 0);
+        final int min = Math.min(start, target);
+        final int max = Math.max(start, target);
+        for (long time = FRAME_MILLIS; time <= MAX_DURATION_MILLIS && !engine.isFinished(); time += FRAME_MILLIS) {
+            engine.computeOffset(time);
+            final int current = engine.getCurrY();
+            assertTrue("Position " + current + " left [" + min + ", " + max + "]", current >= min && current <= max);
+        }
+        assertTrue(engine.isFinished());
+        assertFalse(engine.computeOffset(MAX_DURATION_MILLIS + FRAME_MILLIS));
+        assertEquals(target, engine.getCurrY());
+    }
+}
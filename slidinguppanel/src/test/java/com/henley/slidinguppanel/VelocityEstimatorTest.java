@@ -0,0 +1,123 @@
+package com.henley.slidinguppanel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link VelocityEstimator}的单元测试
+ *
+ * @author Henley
+ * @date 2026/10/16 10:00
+ */
+public class VelocityEstimatorTest {
+
+    private static final int POINTER_ID = 0;
+    private static final int UNITS = 1000;
+    private static final float MAX_VELOCITY = 100000;
+    /**
+     * 采样间隔(单位：ms)
+     */
+    private static final long INTERVAL = 8;
+    private static final float TOLERANCE = 0.5f;
+
+    @Test
+    public void constantVelocity() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        // vx = 2 px/ms，vy = -0.5 px/ms
+        for (int i = 0; i <= 10; i++) {
+            final long time = i * INTERVAL;
+            estimator.addMovement(POINTER_ID, time, 100 + 2f * time, 500 - 0.5f * time);
+        }
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(2000, estimator.getXVelocity(POINTER_ID), TOLERANCE);
+        assertEquals(-500, estimator.getYVelocity(POINTER_ID), TOLERANCE);
+        assertEquals(2f * INTERVAL, estimator.predictX(POINTER_ID, INTERVAL), 0.01f);
+        assertEquals(-0.5f * INTERVAL, estimator.predictY(POINTER_ID, INTERVAL), 0.01f);
+    }
+
+    @Test
+    public void constantAcceleration() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        // x(t) = 0.5·t + 0.01·t²，最后一个采样时刻t = 80ms的速度为0.5 + 0.02·80 = 2.1 px/ms
+        for (int i = 0; i <= 10; i++) {
+            final long time = i * INTERVAL;
+            estimator.addMovement(POINTER_ID, time, 0.5f * time + 0.01f * time * time, 0);
+        }
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(2100, estimator.getXVelocity(POINTER_ID), TOLERANCE);
+        assertEquals(0, estimator.getYVelocity(POINTER_ID), TOLERANCE);
+        // 之后8ms的位移：2.1·8 + 0.01·8² = 17.44
+        assertEquals(17.44f, estimator.predictX(POINTER_ID, INTERVAL), 0.01f);
+    }
+
+    @Test
+    public void pauseLongerThanStopThresholdDropsHistory() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        // 快速移动(5 px/ms)
+        long time = 0;
+        float y = 0;
+        for (int i = 0; i < 6; i++) {
+            estimator.addMovement(POINTER_ID, time, 0, y);
+            time += INTERVAL;
+            y += 5 * INTERVAL;
+        }
+        // 停顿超过阈值后慢速移动(1 px/ms)，之前的采样不再参与计算
+        time += VelocityEstimator.ASSUME_STOPPED_MILLIS + 1;
+        for (int i = 0; i < 4; i++) {
+            estimator.addMovement(POINTER_ID, time, 0, y);
+            time += INTERVAL;
+            y += INTERVAL;
+        }
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(1000, estimator.getYVelocity(POINTER_ID), TOLERANCE);
+    }
+
+    @Test
+    public void pauseWithinStopThresholdKeepsHistory() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.addMovement(POINTER_ID, 0, 0, 0);
+        estimator.addMovement(POINTER_ID, VelocityEstimator.ASSUME_STOPPED_MILLIS, 0, 40);
+        estimator.addMovement(POINTER_ID, VelocityEstimator.ASSUME_STOPPED_MILLIS * 2, 0, 80);
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(1000, estimator.getYVelocity(POINTER_ID), TOLERANCE);
+    }
+
+    @Test
+    public void twoSamplesFallBackToLinearFit() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.addMovement(POINTER_ID, 0, 10, 10);
+        estimator.addMovement(POINTER_ID, 10, 40, 0);
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(3000, estimator.getXVelocity(POINTER_ID), TOLERANCE);
+        assertEquals(-1000, estimator.getYVelocity(POINTER_ID), TOLERANCE);
+        // 一次拟合没有加速度项
+        assertEquals(3f * 20, estimator.predictX(POINTER_ID, 20), 0.01f);
+        assertEquals(-1f * 20, estimator.predictY(POINTER_ID, 20), 0.01f);
+    }
+
+    @Test
+    public void singleSampleHasNoVelocity() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.addMovement(POINTER_ID, 0, 10, 10);
+        estimator.computeCurrentVelocity(UNITS, MAX_VELOCITY);
+
+        assertEquals(0, estimator.getXVelocity(POINTER_ID), 0);
+        assertEquals(0, estimator.predictX(POINTER_ID, INTERVAL), 0);
+    }
+
+    @Test
+    public void velocityIsClampedToMaximum() {
+        final VelocityEstimator estimator = new VelocityEstimator(1);
+        estimator.addMovement(POINTER_ID, 0, 0, 0);
+        estimator.addMovement(POINTER_ID, 10, 0, -1000);
+        estimator.computeCurrentVelocity(UNITS, 8000);
+
+        assertEquals(-8000, estimator.getYVelocity(POINTER_ID), 0);
+    }
+}